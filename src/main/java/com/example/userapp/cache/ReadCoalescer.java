@@ -0,0 +1,115 @@
+package com.example.userapp.cache;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.event.UserChangedEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for reads: concurrent calls with the same method and arguments share one
+ * execution and its result (or exception) instead of each issuing the same query.
+ * <p>
+ * Only the caller that starts a flight opens a read-only transaction, so callers waiting on it
+ * do not hold a pooled connection. Nothing is kept once the flight lands; this only collapses
+ * calls that overlap in time. A committed user change detaches all flights, so a call that starts
+ * after the change never joins a query that may have read the rows before it. Callers answered by a
+ * read served from a replica are marked as having read from one ({@link DataSourceRouting#readFromReplica()}).
+ * Calls pinned to the primary ({@link DataSourceRouting#isPrimaryRequired()}) only join flights of
+ * other pinned calls, so a read-your-writes read is never answered from a replica.
+ */
+@Component
+public class ReadCoalescer {
+
+    private final ConcurrentMap<Key, CompletableFuture<Landed>> inFlight = new ConcurrentHashMap<>();
+    private final TransactionTemplate readOnlyTransaction;
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public ReadCoalescer(PlatformTransactionManager transactionManager) {
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Runs {@code read} unless an identical call is already in flight, in which case this waits
+     * for that call and returns its result. Arguments are compared with {@code equals}, so callers
+     * should pass them already normalized.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String method, Supplier<T> read, Object... args) {
+        Key key = new Key(method, DataSourceRouting.isPrimaryRequired(), Arrays.asList(args));
+        CompletableFuture<Landed> flight = new CompletableFuture<>();
+        CompletableFuture<Landed> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            Landed landed = join(leader);
+            if (landed.fromReplica()) {
+                DataSourceRouting.markReadFromReplica();
+            }
+            return (T) landed.result();
+        }
+        executed.incrementAndGet();
+        try {
+            T result = readOnlyTransaction.execute(status -> read.get());
+            flight.complete(new Landed(result, DataSourceRouting.readFromReplica()));
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * Number of calls that ran their read.
+     */
+    public long executedCount() {
+        return executed.get();
+    }
+
+    /**
+     * Number of calls answered by another call's read.
+     */
+    public long coalescedCount() {
+        return coalesced.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        // running flights still complete for the callers already waiting on them
+        inFlight.clear();
+    }
+
+    private static Landed join(CompletableFuture<Landed> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private record Key(String method, boolean primary, List<Object> args) {
+    }
+
+    private record Landed(Object result, boolean fromReplica) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.userapp.cache;
+
+import com.example.userapp.event.UserChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Already-encoded response bodies of the user list and page endpoints, capped by total bytes
+ * (Caffeine, W-TinyLFU eviction by weight plus a write TTL). Bodies of at least {@code gzip-min-size}
+ * are stored gzip'd for clients that accept it, so neither Jackson nor the compressor runs on a hit.
+ * <p>
+ * Keys carry the {@link UserWriteGeneration} token read before the query, so an entry can only be
+ * served until the next change committed on any instance. Changes made through this instance also
+ * clear the cache, since older generations can never be hit again; entries of generations moved on
+ * by other instances are left to eviction and expiry.
+ */
+@Component
+public class ResponseBodyCache {
+
+    // rough per-entry overhead on top of the body: key strings, entry and array headers
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Cache<Key, CachedResponse> cache;
+    private final long gzipMinSize;
+
+    public ResponseBodyCache(@Value("${app.cache.responses.maximum-size:64MB}") DataSize maximumSize,
+                             @Value("${app.cache.responses.expire-after-write:10m}") Duration expireAfterWrite,
+                             @Value("${app.cache.responses.gzip-min-size:2KB}") DataSize gzipMinSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maximumSize.toBytes())
+                .weigher((Key key, CachedResponse response) -> response.body().length + ENTRY_OVERHEAD)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        this.gzipMinSize = gzipMinSize.toBytes();
+    }
+
+    public CachedResponse get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Stores a freshly rendered body, gzip'd when the key asks for it and the body is large enough.
+     *
+     * @return the entry as stored, to be written to the response that produced it
+     */
+    public CachedResponse put(Key key, byte[] body, String contentType, String etag) {
+        boolean gzipped = key.gzip() && body.length >= gzipMinSize;
+        CachedResponse response = new CachedResponse(gzipped ? gzip(body) : body, contentType, etag, gzipped);
+        cache.put(key, response);
+        return response;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public Cache<Key, CachedResponse> nativeCache() {
+        return cache;
+    }
+
+    /**
+     * Returns the bytes currently held, as counted against {@code maximum-size}.
+     */
+    public long weightedSize() {
+        return cache.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    public CacheStatistics statistics() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), stats.loadFailureCount());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidateAll();
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * One rendering of one request: the representation depends on the path, the query string and the
+     * {@code Accept} header, and on whether the client takes gzip.
+     */
+    public record Key(String generation, String path, String query, String accept, boolean gzip) {
+    }
+
+    public record CachedResponse(byte[] body, String contentType, String etag, boolean gzipped) {
+    }
+}
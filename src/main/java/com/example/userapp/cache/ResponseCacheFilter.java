@@ -0,0 +1,100 @@
+package com.example.userapp.cache;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Serves GETs of the mapped paths from {@link ResponseBodyCache}: a hit writes the stored bytes in a
+ * single write, skipping the query, the mapping and Jackson; a miss renders through the controller
+ * as usual and keeps a copy of the 200 body. Stored pages keep their weak ETag, so a matching
+ * {@code If-None-Match} is still answered with 304.
+ * <p>
+ * Streaming (NDJSON) requests are never buffered. Neither are requests pinned to the primary by
+ * read-your-writes: what they read may be newer than the replicas, and the reverse must not be
+ * served to them. Bodies read from a replica are served but not stored: a lagging replica can
+ * return rows from before a write whose generation is already current.
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private final ResponseBodyCache cache;
+    private final UserWriteGeneration writeGeneration;
+
+    public ResponseCacheFilter(ResponseBodyCache cache, UserWriteGeneration writeGeneration) {
+        this.cache = cache;
+        this.writeGeneration = writeGeneration;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (!HttpMethod.GET.matches(request.getMethod()) || DataSourceRouting.isPrimaryRequired()
+                || (accept != null && accept.contains(MediaType.APPLICATION_NDJSON_VALUE))) {
+            chain.doFilter(request, response);
+            return;
+        }
+        // read before the query, so a concurrent write can only make the key stale, never the body
+        String generation = writeGeneration.current();
+        if (generation == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        ResponseBodyCache.Key key = new ResponseBodyCache.Key(generation, request.getRequestURI(),
+                request.getQueryString(), accept, acceptsGzip(request));
+        ResponseBodyCache.CachedResponse cached = cache.get(key);
+        if (cached != null) {
+            if (cached.etag() == null || !new ServletWebRequest(request, response).checkNotModified(cached.etag())) {
+                write(cached, response);
+            }
+            return;
+        }
+
+        ContentCachingResponseWrapper rendering = new ContentCachingResponseWrapper(response);
+        boolean readFromReplica;
+        DataSourceRouting.resetReplicaRead();
+        try {
+            chain.doFilter(request, rendering);
+        } finally {
+            readFromReplica = DataSourceRouting.readFromReplica();
+            DataSourceRouting.resetReplicaRead();
+        }
+        if (rendering.getStatus() != HttpServletResponse.SC_OK || request.isAsyncStarted() || readFromReplica
+                || rendering.getHeader(HttpHeaders.CONTENT_ENCODING) != null) {
+            rendering.copyBodyToResponse();
+            return;
+        }
+        write(cache.put(key, rendering.getContentAsByteArray(), rendering.getContentType(),
+                rendering.getHeader(HttpHeaders.ETAG)), response);
+    }
+
+    private static void write(ResponseBodyCache.CachedResponse cached, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(cached.contentType());
+        if (cached.etag() != null) {
+            response.setHeader(HttpHeaders.ETAG, cached.etag());
+        }
+        if (cached.gzipped()) {
+            // an encoded body is left alone by the container's own compression
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        response.setContentLength(cached.body().length);
+        response.getOutputStream().write(cached.body());
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+}
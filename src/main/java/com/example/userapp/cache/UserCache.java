@@ -0,0 +1,70 @@
+package com.example.userapp.cache;
+
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.payload.UserDto;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded read-through cache of users by id (Caffeine, W-TinyLFU eviction plus a write TTL).
+ * <p>
+ * Entries are dropped once a change to the user has committed, before the writing call returns.
+ * A load that raced with the write cannot re-insert the old row afterwards: Caffeine runs the
+ * loader while holding the entry, so the invalidation waits for it and then removes what it loaded.
+ */
+@Component
+public class UserCache {
+
+    private final Cache<Long, UserDto> cache;
+
+    public UserCache(@Value("${app.cache.users.maximum-size:10000}") long maximumSize,
+                     @Value("${app.cache.users.expire-after-write:10m}") Duration expireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Returns the cached user or loads it; concurrent misses for the same id share one load.
+     * Exceptions thrown by the loader propagate and nothing is cached.
+     */
+    public UserDto get(long id, LongFunction<UserDto> loader) {
+        return cache.get(id, loader::apply);
+    }
+
+    public UserDto getIfPresent(long id) {
+        return cache.getIfPresent(id);
+    }
+
+    public void invalidate(long id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public Cache<Long, UserDto> nativeCache() {
+        return cache;
+    }
+
+    public CacheStatistics statistics() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), stats.loadFailureCount());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        invalidate(event.getId());
+    }
+}
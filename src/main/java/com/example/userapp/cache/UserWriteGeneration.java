@@ -0,0 +1,128 @@
+package com.example.userapp.cache;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.datasource.ShardContext;
+import com.example.userapp.event.UserChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counter bumped once per transaction that commits user changes; keys {@link ResponseBodyCache}
+ * entries so a response built from many users is never served after a change it does not show.
+ * <p>
+ * The count lives in the {@code write_generations} row {@code users} on the primary (shard 0), so
+ * a commit on any instance moves every instance to a new generation. It is read at most once per
+ * {@code app.cache.responses.generation-refresh}: 0, the default, reads it for every cacheable
+ * request; a longer interval lets other instances' writes go unseen for up to that long. Writes
+ * through this instance are seen at once either way.
+ */
+@Component
+public class UserWriteGeneration {
+
+    static final String NAME = "users";
+
+    private static final Logger log = LoggerFactory.getLogger(UserWriteGeneration.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate newTransaction;
+    private final long refreshNanos;
+    private final AtomicLong local = new AtomicLong();
+    private volatile Long shared;
+    private volatile long sharedReadAt;
+
+    public UserWriteGeneration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                               @Value("${app.cache.responses.generation-refresh:0s}") Duration refresh) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.refreshNanos = refresh.toNanos();
+    }
+
+    /**
+     * Returns a token that changes whenever a user change has committed since it was last read, or
+     * null when the shared count cannot be read and nothing should be cached. Read it before
+     * querying so a concurrent write can only make the token stale, never the data.
+     */
+    public String current() {
+        long now = System.nanoTime();
+        Long generation = shared;
+        if (generation == null || now - sharedReadAt >= refreshNanos) {
+            try {
+                generation = readShared();
+            } catch (DataAccessException e) {
+                log.warn("Could not read the shared write generation, not caching: {}", e.getMessage());
+                return null;
+            }
+            shared = generation;
+            sharedReadAt = now;
+        }
+        return generation + "-" + local.get();
+    }
+
+    @EventListener
+    public void onUserChanged(UserChangedEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            committed();
+            return;
+        }
+        // one bump per transaction however many users it changed
+        if (TransactionSynchronizationManager.hasResource(this)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                committed();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(UserWriteGeneration.this);
+            }
+        });
+    }
+
+    private void committed() {
+        local.incrementAndGet();
+        try {
+            ShardContext.run(0, () -> newTransaction.executeWithoutResult(status -> bumpShared()));
+        } catch (DataAccessException e) {
+            // this instance still moves on through the local count; the others keep serving until expiry
+            log.warn("Could not bump the shared write generation: {}", e.getMessage());
+        }
+        shared = null;
+    }
+
+    private long readShared() {
+        return DataSourceRouting.onPrimary(() -> ShardContext.on(0, () -> jdbcTemplate.query(
+                "SELECT generation FROM write_generations WHERE name = ?",
+                rs -> rs.next() ? rs.getLong(1) : 0L, NAME)));
+    }
+
+    private void bumpShared() {
+        if (jdbcTemplate.update("UPDATE write_generations SET generation = generation + 1 WHERE name = ?", NAME) > 0) {
+            return;
+        }
+        // the row is seeded by db/mysql/schema.sql; where Hibernate created the table it is added here
+        try {
+            jdbcTemplate.update("INSERT INTO write_generations (name, generation) VALUES (?, 1)", NAME);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.update("UPDATE write_generations SET generation = generation + 1 WHERE name = ?", NAME);
+        }
+    }
+}
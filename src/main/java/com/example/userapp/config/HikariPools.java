@@ -0,0 +1,41 @@
+package com.example.userapp.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.jdbc.DatabaseDriver;
+
+import java.util.Properties;
+
+/**
+ * Builds the replica and shard pools of the routing data sources from the primary pool's
+ * {@code spring.datasource.hikari.*} configuration. Every pool then behaves the way Hibernate was
+ * configured for: above all auto-commit, which {@code provider_disables_autocommit} trusts to be off
+ * on every connection, plus timeouts, lifetimes and driver properties.
+ */
+final class HikariPools {
+
+    private HikariPools() {
+    }
+
+    static HikariDataSource like(HikariDataSource primary, String poolName, String url, String username,
+                                 String password, String driverClassName, Integer maximumPoolSize) {
+        HikariDataSource pool = new HikariDataSource();
+        primary.copyStateTo(pool);
+        pool.setPoolName(poolName);
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        String driver = driverClassName != null ? driverClassName : DatabaseDriver.fromJdbcUrl(url).getDriverClassName();
+        if (driver != null) {
+            pool.setDriverClassName(driver);
+        }
+        Properties driverProperties = new Properties();
+        driverProperties.putAll(primary.getDataSourceProperties());
+        pool.setDataSourceProperties(driverProperties);
+        if (maximumPoolSize != null) {
+            pool.setMaximumPoolSize(maximumPoolSize);
+            // a fixed-size primary makes fixed-size pools here too; unset (-1) keeps Hikari's default
+            pool.setMinimumIdle(Math.min(primary.getMinimumIdle(), maximumPoolSize));
+        }
+        return pool;
+    }
+}
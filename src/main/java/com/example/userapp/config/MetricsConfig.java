@@ -0,0 +1,74 @@
+package com.example.userapp.config;
+
+import com.example.userapp.cache.ReadCoalescer;
+import com.example.userapp.cache.ResponseBodyCache;
+import com.example.userapp.cache.UserCache;
+import com.example.userapp.datasource.PoolSizeAdvisor;
+import com.example.userapp.search.EmailBloomFilter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder userCacheMetrics(UserCache userCache) {
+        return registry -> CaffeineCacheMetrics.monitor(registry, userCache.nativeCache(), "users.byId");
+    }
+
+    @Bean
+    public MeterBinder emailFilterMetrics(EmailBloomFilter emailFilter) {
+        return registry -> {
+            Gauge.builder("users.email.filter.false.positive.rate", emailFilter, filter -> filter.statistics().getObservedFalsePositiveRate())
+                    .tag("source", "observed")
+                    .description("Share of checks for free emails that still needed the exact query")
+                    .register(registry);
+            Gauge.builder("users.email.filter.false.positive.rate", emailFilter, filter -> filter.statistics().getExpectedFalsePositiveRate())
+                    .tag("source", "expected")
+                    .description("False-positive probability implied by the filter's fill ratio")
+                    .register(registry);
+            FunctionCounter.builder("users.email.filter.checks", emailFilter, filter -> filter.statistics().getDefiniteMisses())
+                    .tag("outcome", "definite_miss").register(registry);
+            FunctionCounter.builder("users.email.filter.checks", emailFilter, filter -> filter.statistics().getPossibleHits())
+                    .tag("outcome", "possible_hit").register(registry);
+            FunctionCounter.builder("users.email.filter.checks", emailFilter, filter -> filter.statistics().getFalsePositives())
+                    .tag("outcome", "false_positive").register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder readCoalescerMetrics(ReadCoalescer readCoalescer) {
+        return registry -> {
+            FunctionCounter.builder("users.reads", readCoalescer, ReadCoalescer::executedCount)
+                    .tag("outcome", "executed")
+                    .description("Coalesced reads that ran their own query")
+                    .register(registry);
+            FunctionCounter.builder("users.reads", readCoalescer, ReadCoalescer::coalescedCount)
+                    .tag("outcome", "coalesced")
+                    .description("Coalesced reads answered by an identical call already in flight")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder responseCacheMetrics(ResponseBodyCache responseCache) {
+        return registry -> {
+            CaffeineCacheMetrics.monitor(registry, responseCache.nativeCache(), "users.responses");
+            Gauge.builder("users.responses.cache.bytes", responseCache, ResponseBodyCache::weightedSize)
+                    .description("Encoded response bytes held, counted against app.cache.responses.maximum-size")
+                    .baseUnit("bytes")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder poolSizeAdvisorMetrics(PoolSizeAdvisor poolSizeAdvisor) {
+        return registry -> Gauge.builder("users.pool.recommended.size", poolSizeAdvisor, advisor -> advisor.recommendation().getRecommendedSize())
+                .description("Connection pool size recommended from the sampled peak demand and acquire times")
+                .register(registry);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.userapp.config;
+
+import com.example.userapp.cache.ResponseBodyCache;
+import com.example.userapp.cache.ResponseCacheFilter;
+import com.example.userapp.cache.UserWriteGeneration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Puts {@link ResponseCacheFilter} in front of the list and page endpoints only (exact servlet
+ * mappings, so search, scroll and single-user reads never pass through it). Ordered last, after
+ * read-your-writes has decided whether the request is pinned to the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.cache.responses.enabled", havingValue = "true", matchIfMissing = true)
+public class ResponseCacheConfig {
+
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(ResponseBodyCache cache,
+                                                                         UserWriteGeneration writeGeneration) {
+        FilterRegistrationBean<ResponseCacheFilter> registration =
+                new FilterRegistrationBean<>(new ResponseCacheFilter(cache, writeGeneration));
+        registration.addUrlPatterns("/api/users", "/api/users/pages");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+        return registration;
+    }
+}
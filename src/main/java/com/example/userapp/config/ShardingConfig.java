@@ -0,0 +1,64 @@
+package com.example.userapp.config;
+
+import com.example.userapp.datasource.ShardRoutingDataSource;
+import com.example.userapp.datasource.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Horizontal sharding of the users table, enabled with {@code app.datasource.sharding.enabled=true}.
+ * Replaces Boot's single pool with one pool per shard ({@code spring.datasource.*} is shard 0) and a
+ * routing {@link DataSource} in front of them that JPA and JDBC use.
+ * <p>
+ * Not combined with replica routing or write-behind: both assume a single primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    public ShardingConfig(Environment environment) {
+        for (String property : List.of("app.datasource.routing.enabled", "app.users.write-behind.enabled")) {
+            if (environment.getProperty(property, Boolean.class, false)) {
+                throw new IllegalStateException("app.datasource.sharding.enabled cannot be combined with " + property);
+            }
+        }
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource shardZeroDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("shard-0");
+        return dataSource;
+    }
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(HikariDataSource shardZeroDataSource, ShardingProperties properties) {
+        List<HikariDataSource> shards = new ArrayList<>();
+        shards.add(shardZeroDataSource);
+        for (ShardingProperties.Shard shard : properties.getShards()) {
+            shards.add(HikariPools.like(shardZeroDataSource, "shard-" + shards.size(), shard.getUrl(),
+                    shard.getUsername(), shard.getPassword(), shard.getDriverClassName(), shard.getMaximumPoolSize()));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.userapp.config;
+
+import com.example.userapp.metrics.SlowQueryLog;
+import com.example.userapp.metrics.SqlStatementFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Wraps every request in {@link SqlStatementFilter}, outermost, so cached responses show up as
+ * requests without statements. The Hibernate hooks feeding it are registered in application.properties.
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.sql.statements.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlStatementConfig {
+
+    @Bean
+    public FilterRegistrationBean<SqlStatementFilter> sqlStatementFilter(
+            SlowQueryLog slowQueryLog,
+            @Value("${app.sql.statements.max-per-request:10}") int maxStatements,
+            @Value("${app.sql.statements.max-time-per-request:100ms}") Duration maxTime,
+            @Value("${app.sql.statements.n-plus-one-threshold:5}") int nPlusOneThreshold,
+            @Value("${app.sql.slow-query.threshold:50ms}") Duration slowQueryThreshold) {
+        FilterRegistrationBean<SqlStatementFilter> registration = new FilterRegistrationBean<>(
+                new SqlStatementFilter(slowQueryLog, maxStatements, maxTime, nPlusOneThreshold, slowQueryThreshold));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return registration;
+    }
+}
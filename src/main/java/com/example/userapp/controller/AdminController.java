@@ -0,0 +1,113 @@
+package com.example.userapp.controller;
+
+import com.example.userapp.cache.CacheStatistics;
+import com.example.userapp.cache.ResponseBodyCache;
+import com.example.userapp.cache.UserCache;
+import com.example.userapp.datasource.PoolSizeAdvisor;
+import com.example.userapp.datasource.PoolSizeRecommendation;
+import com.example.userapp.metrics.SlowQuery;
+import com.example.userapp.metrics.SlowQueryLog;
+import com.example.userapp.search.EmailBloomFilter;
+import com.example.userapp.search.EmailFilterStatistics;
+import com.example.userapp.search.IndexVerification;
+import com.example.userapp.search.UserSearchIndex;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("api/admin")
+@Tag(name = "Admin Controller")
+public class AdminController {
+
+    private UserSearchIndex searchIndex;
+    private UserCache userCache;
+    private EmailBloomFilter emailFilter;
+    private ResponseBodyCache responseCache;
+    private PoolSizeAdvisor poolSizeAdvisor;
+    private SlowQueryLog slowQueryLog;
+
+    public AdminController(UserSearchIndex searchIndex, UserCache userCache, EmailBloomFilter emailFilter,
+                           ResponseBodyCache responseCache, PoolSizeAdvisor poolSizeAdvisor, SlowQueryLog slowQueryLog) {
+        this.searchIndex = searchIndex;
+        this.userCache = userCache;
+        this.emailFilter = emailFilter;
+        this.responseCache = responseCache;
+        this.poolSizeAdvisor = poolSizeAdvisor;
+        this.slowQueryLog = slowQueryLog;
+    }
+
+    @Operation(summary = "Rebuild the in-memory user search index from the database")
+    @PostMapping("/search-index/rebuild")
+    public ResponseEntity<IndexVerification> rebuildSearchIndex(){
+        searchIndex.rebuild();
+        return ResponseEntity.ok(searchIndex.verify());
+    }
+
+    @Operation(summary = "Compare the in-memory user search index with the database")
+    @GetMapping("/search-index/verify")
+    public ResponseEntity<IndexVerification> verifySearchIndex(){
+        return ResponseEntity.ok(searchIndex.verify());
+    }
+
+    @Operation(summary = "Hit, miss and eviction counters of the user-by-id cache")
+    @GetMapping("/cache/users")
+    public ResponseEntity<CacheStatistics> userCacheStatistics(){
+        return ResponseEntity.ok(userCache.statistics());
+    }
+
+    @Operation(summary = "Size, fill and false-positive counters of the duplicate-email filter")
+    @GetMapping("/email-filter")
+    public ResponseEntity<EmailFilterStatistics> emailFilterStatistics(){
+        return ResponseEntity.ok(emailFilter.statistics());
+    }
+
+    @Operation(summary = "Rebuild the duplicate-email filter from the database")
+    @PostMapping("/email-filter/rebuild")
+    public ResponseEntity<EmailFilterStatistics> rebuildEmailFilter(){
+        emailFilter.rebuild();
+        return ResponseEntity.ok(emailFilter.statistics());
+    }
+
+    @Operation(summary = "Drop every entry of the user-by-id cache")
+    @DeleteMapping("/cache/users")
+    public ResponseEntity<CacheStatistics> clearUserCache(){
+        userCache.invalidateAll();
+        return ResponseEntity.ok(userCache.statistics());
+    }
+
+    @Operation(summary = "Hit, miss and eviction counters of the list and page response cache")
+    @GetMapping("/cache/responses")
+    public ResponseEntity<CacheStatistics> responseCacheStatistics(){
+        return ResponseEntity.ok(responseCache.statistics());
+    }
+
+    @Operation(summary = "Drop every entry of the list and page response cache")
+    @DeleteMapping("/cache/responses")
+    public ResponseEntity<CacheStatistics> clearResponseCache(){
+        responseCache.invalidateAll();
+        return ResponseEntity.ok(responseCache.statistics());
+    }
+
+    @Operation(summary = "Connection pool size recommended from sampled demand and acquire times")
+    @GetMapping("/pool")
+    public ResponseEntity<PoolSizeRecommendation> poolSizeRecommendation(){
+        return ResponseEntity.ok(poolSizeAdvisor.recommendation());
+    }
+
+    @Operation(summary = "Most recent slow SQL statements of HTTP requests, slowest first")
+    @GetMapping("/sql/slow-queries")
+    public ResponseEntity<List<SlowQuery>> slowQueries(){
+        return ResponseEntity.ok(slowQueryLog.slowest());
+    }
+
+    @Operation(summary = "Empty the slow SQL statement log")
+    @DeleteMapping("/sql/slow-queries")
+    public ResponseEntity<Void> clearSlowQueries(){
+        slowQueryLog.clear();
+        return ResponseEntity.noContent().build();
+    }
+}
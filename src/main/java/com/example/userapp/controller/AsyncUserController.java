@@ -0,0 +1,122 @@
+package com.example.userapp.controller;
+
+
+import com.example.userapp.exception.ConcurrentUpdateException;
+import com.example.userapp.exception.PreconditionFailedException;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.AsyncUserService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Same resource as {@link UserController}, but handlers release the servlet thread while the
+ * database call runs. Enabled with {@code app.async.enabled=true}.
+ */
+@RestController
+@RequestMapping("api/async/users")
+@Tag(name = "Async User Controller")
+@ConditionalOnProperty(name = "app.async.enabled", havingValue = "true")
+public class AsyncUserController {
+
+
+    private AsyncUserService userService;
+
+    public AsyncUserController(AsyncUserService userService) {
+        this.userService = userService;
+    }
+
+    @Operation(summary = "Save new user to database")
+    @PostMapping
+    public CompletableFuture<ResponseEntity<UserDto>> createUser(@Valid @RequestBody UserDto userDto){
+        return userService.saveUser(userDto).thenApply(user -> new ResponseEntity<>(user, HttpStatus.CREATED));
+    }
+
+    @Operation(summary = "Get user with give ID")
+    @GetMapping("/{id}")
+    public CompletableFuture<ResponseEntity<UserDto>> getUserById(@PathVariable(name = "id") long id){
+        return userService.getUserById(id).thenApply(AsyncUserController::withETag);
+    }
+
+    @Operation(summary = "Get all users at once")
+    @GetMapping
+    public CompletableFuture<ResponseEntity<List<UserDto>>> getUsers(){
+        return userService.getAllUsers().thenApply(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Get all users with paging")
+    @GetMapping("/pages")
+    public CompletableFuture<ResponseEntity<Page<UserDto>>> getUsersWithPagination(@RequestParam("page") int page,
+                                                                                @RequestParam("size") int size){
+        return userService.getUserWithPagination(page, size).thenApply(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Search users with keyword")
+    @GetMapping("/search")
+    public CompletableFuture<ResponseEntity<List<UserDto>>> searchUsers(@RequestParam("q") String query){
+        return userService.searchUser(query).thenApply(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Search users with paging")
+    @GetMapping("/search/pages")
+    public CompletableFuture<ResponseEntity<Page<UserDto>>> searchUsersWithPagination(@RequestParam("q") String query,
+                                                                                   @RequestParam("page") int page,
+                                                                                   @RequestParam("size") int size){
+        return userService.searchWithPagination(query, PageRequest.of(page, size)).thenApply(ResponseEntity::ok);
+    }
+
+    @Operation(summary = "Update user with give ID; needs its version as If-Match or in the body, else 428")
+    @PutMapping("/{id}")
+    public CompletableFuture<ResponseEntity<UserDto>> updateUser(@PathVariable(name = "id") long id, @Valid @RequestBody UserDto userDto,
+                                                                 @RequestHeader(value = "If-Match", required = false) String ifMatch){
+        if (ifMatch == null) {
+            // the version in the body, if any; without either the service answers 428
+            return userService.updateUser(userDto, id).thenApply(AsyncUserController::withETag);
+        }
+        CompletableFuture<Long> version;
+        if (ifMatch.trim().equals(UserETags.ANY)) {
+            // "*" only asks for the user to exist: update the version it has now
+            version = userService.getCurrentVersion(id);
+        } else {
+            Long tagged = UserETags.parseVersion(ifMatch);
+            if (tagged == null) {
+                throw new PreconditionFailedException("If-Match does not match any version of user " + id);
+            }
+            version = CompletableFuture.completedFuture(tagged);
+        }
+        return version
+                .thenCompose(current -> {
+                    userDto.setVersion(current);
+                    return userService.updateUser(userDto, id);
+                })
+                .thenApply(AsyncUserController::withETag)
+                .exceptionally(e -> {
+                    if (e.getCause() instanceof ConcurrentUpdateException) {
+                        throw new PreconditionFailedException(e.getCause().getMessage());
+                    }
+                    throw e instanceof CompletionException completion ? completion : new CompletionException(e);
+                });
+    }
+
+    @Operation(summary = "Delete existing user with given ID")
+    @DeleteMapping(value = "/{id}")
+    public CompletableFuture<ResponseEntity<Long>> deleteUser(@PathVariable Long id) {
+        return userService.deleteUserById(id).thenApply(ignored -> ResponseEntity.ok(id));
+    }
+
+    private static ResponseEntity<UserDto> withETag(UserDto user) {
+        String etag = UserETags.of(user);
+        return etag == null ? ResponseEntity.ok(user) : ResponseEntity.ok().eTag(etag).body(user);
+    }
+
+}
@@ -1,18 +1,39 @@
 package com.example.userapp.controller;
 
 
-import com.example.userapp.entity.User;
+import com.example.userapp.exception.ConcurrentUpdateException;
+import com.example.userapp.exception.PreconditionFailedException;
+import com.example.userapp.exception.ResourceNotFoundException;
+import com.example.userapp.payload.BatchCreateResponse;
+import com.example.userapp.payload.ImportSummary;
+import com.example.userapp.payload.ScrollResponse;
 import com.example.userapp.payload.UserDto;
+import com.example.userapp.payload.WriteBehindStatus;
+import com.example.userapp.service.UserImportService;
 import com.example.userapp.service.UserService;
+import com.example.userapp.service.WriteBehindUserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -22,22 +43,76 @@ public class UserController {
 
 
     private UserService userService;
+    private ObjectMapper objectMapper;
+    private UserImportService importService;
+    // null unless app.users.write-behind.enabled=true
+    private WriteBehindUserService writeBehindService;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper,
+                          UserImportService importService, ObjectProvider<WriteBehindUserService> writeBehindService) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.importService = importService;
+        this.writeBehindService = writeBehindService.getIfAvailable();
     }
 
-    @Operation(summary = "Save new user to database")
+    @Operation(summary = "Save new user to database; 202 with the assigned id when write-behind is enabled")
     @PostMapping
     public ResponseEntity<UserDto> createUser(@Valid @RequestBody UserDto userDto){
-
+        if (writeBehindService != null) {
+            return new ResponseEntity<>(writeBehindService.enqueueUser(userDto), HttpStatus.ACCEPTED);
+        }
         return new ResponseEntity<>(userService.saveUser(userDto), HttpStatus.CREATED);
     }
 
+    @Operation(summary = "How a user accepted with 202 by write-behind fared: 202 pending, 200 stored, 410 failed with the reason")
+    @GetMapping("/write-behind/{id}")
+    public ResponseEntity<WriteBehindStatus> getWriteBehindStatus(@PathVariable(name = "id") long id){
+        if (writeBehindService == null) {
+            throw new ResourceNotFoundException("write-behind user", id);
+        }
+        WriteBehindStatus status = writeBehindService.getStatus(id);
+        HttpStatus httpStatus = switch (status.getState()) {
+            case PENDING -> HttpStatus.ACCEPTED;
+            case STORED -> HttpStatus.OK;
+            case FAILED -> HttpStatus.GONE;
+        };
+        return new ResponseEntity<>(status, httpStatus);
+    }
+
+    @Operation(summary = "Save a list of new users in batched, chunked inserts")
+    @PostMapping("/batch")
+    public ResponseEntity<BatchCreateResponse> createUsers(@RequestBody List<UserDto> userDtos){
+
+        return ResponseEntity.ok(userService.saveUsers(userDtos));
+    }
+
+    @Operation(summary = "Import users from a raw CSV body (firstName,lastName,email), committed in chunks")
+    @PostMapping(value = "/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<ImportSummary> importUsers(InputStream body) throws IOException {
+
+        return ResponseEntity.ok(importService.importCsv(body));
+    }
+
+    @Operation(summary = "Import users from an uploaded CSV file (firstName,lastName,email) of up to 10 MB, committed in chunks")
+    @PostMapping(value = "/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportSummary> importUsersFile(@RequestPart("file") MultipartFile file) throws IOException {
+        try (InputStream body = file.getInputStream()) {
+            return ResponseEntity.ok(importService.importCsv(body));
+        }
+    }
+
     @Operation(summary = "Get user with give ID")
     @GetMapping("/{id}")
     public ResponseEntity<UserDto> getUserById(@PathVariable(name = "id") long id){
-        return ResponseEntity.ok(userService.getUserById(id));
+        // served from the id cache when warm; a matching If-None-Match turns this into a bodiless 304
+        return withETag(userService.getUserById(id));
+    }
+
+    @Operation(summary = "Get user with given email (exact, case-insensitive)")
+    @GetMapping("/by-email")
+    public ResponseEntity<UserDto> getUserByEmail(@RequestParam("email") String email){
+        return ResponseEntity.ok(userService.getUserByEmail(email));
     }
 
     @Operation(summary = "Get all users at once")
@@ -46,32 +121,112 @@ public class UserController {
         return ResponseEntity.ok(userService.getAllUsers());
     }
 
+    @Operation(summary = "Stream all users as newline-delimited JSON")
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers(){
+        StreamingResponseBody body = outputStream -> {
+            try (SequenceWriter writer = objectMapper.writer()
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .withRootValueSeparator("\n")
+                    .writeValues(outputStream)) {
+                userService.streamAllUsers(userDto -> {
+                    try {
+                        writer.write(userDto);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @Operation(summary = "Get all users with paging")
     @GetMapping("/pages")
-    public ResponseEntity<Page<User>> getUsersWithPagination(@RequestParam("page") int page,
-                                                                @RequestParam("size") int size){
-        return ResponseEntity.ok(userService.getUserWithPagination(page, size));
+    public ResponseEntity<Page<UserDto>> getUsersWithPagination(@RequestParam("page") int page,
+                                                                @RequestParam("size") int size,
+                                                                WebRequest request){
+        Page<UserDto> users = userService.getUserWithPagination(page, size);
+        String etag = UserETags.ofPage(users);
+        if (request.checkNotModified(etag)) {
+            // same users at the same versions as the client's copy: skip the serialization and the body
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(users);
+    }
+
+    @Operation(summary = "Scroll through all users with a keyset cursor")
+    @GetMapping("/scroll")
+    public ResponseEntity<ScrollResponse<UserDto>> scrollUsers(@RequestParam(value = "after", required = false) String after,
+                                                            @RequestParam("size") int size){
+        return ResponseEntity.ok(userService.scrollUsers(after, size));
     }
 
     @Operation(summary = "Search users with keyword")
     @GetMapping("/search")
-    public ResponseEntity<List<User>> searchUsers(@RequestParam("q") String query){
+    public ResponseEntity<List<UserDto>> searchUsers(@RequestParam("q") String query){
         return ResponseEntity.ok(userService.searchUser(query));
     }
 
-    @Operation(summary = "Search users with paging")
+    @Operation(summary = "Search users with paging; approximate=true skips the exact COUNT query")
     @GetMapping("/search/pages")
-    public ResponseEntity<Page<User>> searchUsersWithPagination(@RequestParam("q") String query,
+    public ResponseEntity<Page<UserDto>> searchUsersWithPagination(@RequestParam("q") String query,
                                                                    @RequestParam("page") int page,
-                                                                   @RequestParam("size") int size){
-        return ResponseEntity.ok(userService.searchWithPagination(query, PageRequest.of(page, size)));
+                                                                   @RequestParam("size") int size,
+                                                                   @RequestParam(value = "approximate", defaultValue = "false") boolean approximate){
+        PageRequest pageRequest = PageRequest.of(page, size);
+        return ResponseEntity.ok(approximate
+                ? userService.searchWithApproximateCount(query, pageRequest)
+                : userService.searchWithPagination(query, pageRequest));
     }
 
-    @Operation(summary = "Update user with give ID")
-    @PutMapping("/{id}")
-    public ResponseEntity<UserDto> updateUser(@PathVariable(name = "id") long id, @Valid @RequestBody UserDto userDto){
+    @Operation(summary = "Suggest users whose first name, last name or email local part starts with the prefix",
+            description = "Shortest matching term first, then alphabetically; in id order while the index is still being built")
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<UserDto>> autocompleteUsers(@RequestParam("prefix") String prefix,
+                                                           @RequestParam(value = "limit", defaultValue = "10") int limit){
+        return ResponseEntity.ok(userService.autocomplete(prefix, limit));
+    }
+
+    @Operation(summary = "Search users page by page without a total count")
+    @GetMapping("/search/slice")
+    public ResponseEntity<Slice<UserDto>> searchUsersSlice(@RequestParam("q") String query,
+                                                           @RequestParam("page") int page,
+                                                           @RequestParam("size") int size){
+        return ResponseEntity.ok(userService.searchSlice(query, PageRequest.of(page, size)));
+    }
 
-        return new ResponseEntity<>(userService.updateUser(userDto,id), HttpStatus.OK);
+    @Operation(summary = "Scroll through search results with a keyset cursor")
+    @GetMapping("/search/scroll")
+    public ResponseEntity<ScrollResponse<UserDto>> scrollSearchUsers(@RequestParam("q") String query,
+                                                                  @RequestParam(value = "after", required = false) String after,
+                                                                  @RequestParam("size") int size){
+        return ResponseEntity.ok(userService.scrollSearch(query, after, size));
+    }
+
+    @Operation(summary = "Update user with give ID; needs its version as If-Match or in the body, else 428")
+    @PutMapping("/{id}")
+    public ResponseEntity<UserDto> updateUser(@PathVariable(name = "id") long id, @Valid @RequestBody UserDto userDto,
+                                              @RequestHeader(value = "If-Match", required = false) String ifMatch){
+        if (ifMatch == null) {
+            // the version in the body, if any; without either the service answers 428
+            return withETag(userService.updateUser(userDto, id));
+        }
+        // "*" only asks for the user to exist: update the version it has now
+        Long version = ifMatch.trim().equals(UserETags.ANY)
+                ? Long.valueOf(userService.getCurrentVersion(id))
+                : UserETags.parseVersion(ifMatch);
+        if (version == null) {
+            throw new PreconditionFailedException("If-Match does not match any version of user " + id);
+        }
+        userDto.setVersion(version);
+        try {
+            return withETag(userService.updateUser(userDto, id));
+        } catch (ConcurrentUpdateException e) {
+            throw new PreconditionFailedException(e.getMessage());
+        }
     }
 
     @Operation(summary = "Delete existing user with given ID")
@@ -81,4 +236,16 @@ public class UserController {
         return new ResponseEntity<>(id, HttpStatus.OK);
     }
 
+    @ExceptionHandler(MaxUploadSizeExceededException.class)
+    public ResponseEntity<String> uploadTooLarge(MaxUploadSizeExceededException e) {
+        // multipart is parsed lazily, when the file part is resolved, so this controller sees the limit
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body("Upload exceeds spring.servlet.multipart.max-file-size; POST larger CSV files as a text/csv body");
+    }
+
+    private static ResponseEntity<UserDto> withETag(UserDto user) {
+        String etag = UserETags.of(user);
+        return etag == null ? ResponseEntity.ok(user) : ResponseEntity.ok().eTag(etag).body(user);
+    }
 }
@@ -0,0 +1,72 @@
+package com.example.userapp.controller;
+
+import com.example.userapp.payload.UserDto;
+import org.springframework.data.domain.Page;
+
+/**
+ * Weak entity tags for user representations. A user's tag is its optimistic-locking version, so
+ * it changes exactly when the row does and can be fed back as the expected version on update.
+ * Weak because JSON, CBOR and Smile bodies of one version share it without being byte-identical.
+ */
+final class UserETags {
+
+    static final String ANY = "*";
+
+    private UserETags() {
+    }
+
+    /**
+     * Returns the tag of this user, or null when the row predates the version column.
+     */
+    static String of(UserDto user) {
+        return user.getVersion() == null ? null : "W/\"" + user.getVersion() + "\"";
+    }
+
+    /**
+     * Weak tag for a page of users, hashed from the total and the id and version of every user on it,
+     * so it only depends on the data and agrees across instances. Weak because equal tags only mean
+     * the same users at the same versions, and because Tomcat refuses to gzip responses carrying a
+     * strong tag.
+     */
+    static String ofPage(Page<UserDto> page) {
+        // 64-bit FNV-1a over the longs
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, page.getTotalElements());
+        hash = mix(hash, page.getNumber());
+        hash = mix(hash, page.getSize());
+        for (UserDto user : page.getContent()) {
+            hash = mix(hash, user.getId() == null ? -1 : user.getId());
+            hash = mix(hash, user.getVersion() == null ? -1 : user.getVersion());
+        }
+        return "W/\"" + Long.toUnsignedString(hash, 36) + "\"";
+    }
+
+    private static long mix(long hash, long value) {
+        for (int i = 0; i < Long.BYTES; i++) {
+            hash ^= (value >>> (i * 8)) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Parses a tag produced by {@link #of(UserDto)}. Updates compare the version, not the bytes, so
+     * the weak tag is accepted, as is the strong form handed out before tags became weak.
+     *
+     * @return the version, or null when the value is not one of our tags
+     */
+    static Long parseVersion(String etag) {
+        String value = etag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        if (value.length() < 3 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
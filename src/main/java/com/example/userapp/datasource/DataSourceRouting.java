@@ -0,0 +1,87 @@
+package com.example.userapp.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread override for {@link ReplicaRoutingDataSource}: while set, read-only transactions use
+ * the primary too. Used for reads that must not lag behind the primary, such as a client's reads
+ * right after its own writes, and full rebuilds of in-memory views of the users table. Has no
+ * effect when replica routing is disabled.
+ */
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    public static void runOnPrimary(Runnable work) {
+        onPrimary(() -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Returns {@code task} bound to this thread's current choice, for running on another thread.
+     */
+    public static Runnable wrap(Runnable task) {
+        return isPrimaryRequired() ? () -> runOnPrimary(task) : task;
+    }
+
+    public static boolean isPrimaryRequired() {
+        return PRIMARY.get() != null;
+    }
+
+    /**
+     * Starts over tracking whether this thread reads from a replica, see {@link #readFromReplica()}.
+     */
+    public static void resetReplicaRead() {
+        REPLICA_READ.remove();
+    }
+
+    /**
+     * Returns whether a connection was routed to a replica on this thread since the last
+     * {@link #resetReplicaRead()}: whatever was read may lag behind the primary.
+     */
+    public static boolean readFromReplica() {
+        return REPLICA_READ.get() != null;
+    }
+
+    /**
+     * Records that this thread uses data read from a replica, possibly by another thread.
+     */
+    public static void markReadFromReplica() {
+        REPLICA_READ.set(Boolean.TRUE);
+    }
+
+    /**
+     * Pins the rest of the current unit of work to the primary; the caller must {@link #clear()}.
+     */
+    static void stickToPrimary() {
+        PRIMARY.set(Boolean.TRUE);
+    }
+
+    static void clear() {
+        PRIMARY.remove();
+    }
+
+    private static void restore(Boolean previous) {
+        if (previous == null) {
+            PRIMARY.remove();
+        } else {
+            PRIMARY.set(previous);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.userapp.datasource;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sizes the primary connection pool from what it observes. Every {@code sample-interval} it records
+ * the active connections, the threads waiting for one and the mean acquire time since the last sample
+ * (from HikariCP's {@code hikaricp.connections.acquire} timer). Over the last {@code window} samples the
+ * pool needs its peak demand, active plus waiting, times {@code headroom}; while threads wait or acquiring
+ * takes longer than {@code target-acquire-time} it needs at least its current size plus the peak number of
+ * waiting threads. The result is kept within {@code [min-size, max-size]} and never below the pool's own
+ * {@code minimum-idle} as configured, its baseline.
+ * <p>
+ * The recommendation is only reported unless {@code apply} is set. Then the pool grows live as soon as a
+ * sample shows threads waiting or slow acquires, and shrinks only after a full window without either and
+ * at most once per {@code shrink-interval}; every resize starts a new window. A fixed-size pool
+ * ({@code minimum-idle} equal to the maximum) stays fixed.
+ */
+@Component
+public class PoolSizeAdvisor {
+
+    private static final Logger log = LoggerFactory.getLogger(PoolSizeAdvisor.class);
+
+    private final HikariDataSource pool;
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+    private final int window;
+    private final long shrinkIntervalNanos;
+    private final double targetAcquireMillis;
+    private final double headroom;
+    private final int minSize;
+    private final int maxSize;
+    private final boolean apply;
+    private final boolean enabled;
+
+    private final Deque<Sample> samples = new ArrayDeque<>();
+    private long lastAcquireCount;
+    private double lastAcquireMillis;
+    private int resizes;
+    // the pool's configured minimum-idle, read once it has started
+    private Integer baseline;
+    private long lastResizeNanos;
+
+    public PoolSizeAdvisor(ObjectProvider<HikariDataSource> pool,
+                           ObjectProvider<MeterRegistry> meterRegistry,
+                           @Value("${app.datasource.pool-advisor.window:30}") int window,
+                           @Value("${app.datasource.pool-advisor.shrink-interval:PT5M}") Duration shrinkInterval,
+                           @Value("${app.datasource.pool-advisor.target-acquire-time:5ms}") Duration targetAcquireTime,
+                           @Value("${app.datasource.pool-advisor.headroom:1.25}") double headroom,
+                           @Value("${app.datasource.pool-advisor.min-size:2}") int minSize,
+                           @Value("${app.datasource.pool-advisor.max-size:50}") int maxSize,
+                           @Value("${app.datasource.pool-advisor.apply:false}") boolean apply,
+                           @Value("${app.datasource.pool-advisor.enabled:true}") boolean enabled) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("app.datasource.pool-advisor needs 1 <= min-size <= max-size");
+        }
+        // the primary pool is the only HikariDataSource bean; replica and extra shard pools are not beans
+        this.pool = pool.getIfUnique();
+        // looked up per sample: the registry binds this advisor's own gauge while it is being created
+        this.meterRegistry = meterRegistry;
+        this.window = window;
+        this.shrinkIntervalNanos = shrinkInterval.toNanos();
+        this.targetAcquireMillis = targetAcquireTime.toNanos() / 1e6;
+        this.headroom = headroom;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.apply = apply;
+        this.enabled = enabled && this.pool != null;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.pool-advisor.sample-interval:PT10S}",
+            initialDelayString = "${app.datasource.pool-advisor.sample-interval:PT10S}")
+    public void sample() {
+        if (!enabled) {
+            return;
+        }
+        // null until the pool has handed out its first connection
+        HikariPoolMXBean stats = pool.getHikariPoolMXBean();
+        if (stats == null) {
+            return;
+        }
+        PoolSizeRecommendation recommendation;
+        synchronized (this) {
+            if (baseline == null) {
+                baseline = pool.getHikariConfigMXBean().getMinimumIdle();
+                lastResizeNanos = System.nanoTime();
+            }
+            Sample sample = new Sample(stats.getActiveConnections(), stats.getThreadsAwaitingConnection(),
+                    acquireMillisSinceLastSample());
+            samples.addLast(sample);
+            while (samples.size() > window) {
+                samples.removeFirst();
+            }
+            recommendation = recommendation();
+            int current = recommendation.getCurrentSize();
+            int recommended = recommendation.getRecommendedSize();
+            boolean grow = recommended > current && (isUnderPressure(sample) || samples.size() >= window);
+            boolean shrink = recommended < current && samples.size() >= window
+                    && System.nanoTime() - lastResizeNanos >= shrinkIntervalNanos;
+            if (!apply || !(grow || shrink)) {
+                return;
+            }
+            resize(recommended);
+            samples.clear();
+        }
+        log.info("Resized connection pool {} from {} to {}: peak demand {}, peak waiting {}, mean acquire time {} ms",
+                recommendation.getPoolName(), recommendation.getCurrentSize(), recommendation.getRecommendedSize(),
+                recommendation.getPeakActive() + recommendation.getPeakWaiting(), recommendation.getPeakWaiting(),
+                recommendation.getMeanAcquireMillis());
+    }
+
+    public synchronized PoolSizeRecommendation recommendation() {
+        if (pool == null) {
+            return new PoolSizeRecommendation(null, 0, 0, minSize, maxSize, 0, 0, 0, 0, 0, apply, resizes);
+        }
+        int current = pool.getMaximumPoolSize();
+        int peakActive = 0;
+        int peakWaiting = 0;
+        int peakDemand = 0;
+        double acquireMillis = 0;
+        double maxAcquireMillis = 0;
+        for (Sample sample : samples) {
+            peakActive = Math.max(peakActive, sample.active());
+            peakWaiting = Math.max(peakWaiting, sample.waiting());
+            peakDemand = Math.max(peakDemand, sample.active() + sample.waiting());
+            acquireMillis += sample.acquireMillis();
+            maxAcquireMillis = Math.max(maxAcquireMillis, sample.acquireMillis());
+        }
+        double meanAcquireMillis = samples.isEmpty() ? 0 : acquireMillis / samples.size();
+
+        int recommended = samples.isEmpty() ? current : (int) Math.ceil(peakDemand * headroom);
+        if (peakWaiting > 0 || meanAcquireMillis > targetAcquireMillis) {
+            // every waiting thread needs a connection of its own; slow acquires without any at sample time still need one
+            recommended = Math.max(recommended, current + Math.max(1, peakWaiting));
+        }
+        int floor = baseline == null ? minSize : Math.max(minSize, baseline);
+        recommended = Math.max(floor, Math.min(maxSize, recommended));
+        return new PoolSizeRecommendation(pool.getPoolName(), current, recommended, floor, maxSize, samples.size(),
+                peakActive, peakWaiting, meanAcquireMillis, maxAcquireMillis, apply, resizes);
+    }
+
+    private boolean isUnderPressure(Sample sample) {
+        return sample.waiting() > 0 || sample.acquireMillis() > targetAcquireMillis;
+    }
+
+    private double acquireMillisSinceLastSample() {
+        MeterRegistry registry = meterRegistry.getIfAvailable();
+        Timer acquire = registry == null ? null
+                : registry.find("hikaricp.connections.acquire").tag("pool", pool.getPoolName()).timer();
+        if (acquire == null) {
+            return 0;
+        }
+        long count = acquire.count();
+        double totalMillis = acquire.totalTime(TimeUnit.MILLISECONDS);
+        long acquired = count - lastAcquireCount;
+        double waited = totalMillis - lastAcquireMillis;
+        lastAcquireCount = count;
+        lastAcquireMillis = totalMillis;
+        return acquired > 0 && waited > 0 ? waited / acquired : 0;
+    }
+
+    private void resize(int size) {
+        HikariConfigMXBean config = pool.getHikariConfigMXBean();
+        boolean fixed = config.getMinimumIdle() >= config.getMaximumPoolSize();
+        if (size > config.getMaximumPoolSize()) {
+            config.setMaximumPoolSize(size);
+            if (fixed) {
+                config.setMinimumIdle(size);
+            }
+        } else {
+            // lower the floor first, HikariCP caps minimum-idle at the maximum anyway
+            if (fixed || config.getMinimumIdle() > size) {
+                config.setMinimumIdle(size);
+            }
+            config.setMaximumPoolSize(size);
+        }
+        resizes++;
+        lastResizeNanos = System.nanoTime();
+    }
+
+    private record Sample(int active, int waiting, double acquireMillis) {
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.userapp.datasource;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * What {@link PoolSizeAdvisor} observed over its current window and the pool size it derives from it.
+ */
+@Getter
+@AllArgsConstructor
+public class PoolSizeRecommendation {
+    private final String poolName;
+    private final int currentSize;
+    private final int recommendedSize;
+    // min-size, or the pool's configured minimum-idle when that is larger
+    private final int minSize;
+    private final int maxSize;
+    private final int samples;
+    private final int peakActive;
+    private final int peakWaiting;
+    private final double meanAcquireMillis;
+    private final double maxAcquireMillis;
+    private final boolean applying;
+    private final int resizes;
+}
@@ -0,0 +1,96 @@
+package com.example.userapp.datasource;
+
+import com.example.userapp.event.UserChangedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Read-your-writes on top of replica routing. When a request commits a user change, the rest of
+ * that request reads from the primary and the response carries a cookie that keeps the client's
+ * next requests on the primary for {@code sticky-window}, long enough for the replicas to catch up.
+ * Clients without the cookie (or another client altogether) may briefly read the old row.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter implements Ordered {
+
+    static final String COOKIE = "primary-until";
+    private static final String STICKY_SET = ReadYourWritesFilter.class.getName() + ".STICKY_SET";
+
+    // ahead of filters that need to know whether the request reads from the primary
+    public static final int ORDER = Ordered.LOWEST_PRECEDENCE - 100;
+
+    private final Duration stickyWindow;
+
+    public ReadYourWritesFilter(Duration stickyWindow) {
+        this.stickyWindow = stickyWindow;
+    }
+
+    @Override
+    public int getOrder() {
+        return ORDER;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (System.currentTimeMillis() < primaryUntil(request)) {
+            DataSourceRouting.stickToPrimary();
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            DataSourceRouting.clear();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        // only writes made on a request thread; the write-behind flusher has no client to stick
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)
+                || attributes.getResponse() == null) {
+            return;
+        }
+        DataSourceRouting.stickToPrimary();
+        HttpServletResponse response = attributes.getResponse();
+        if (attributes.getAttribute(STICKY_SET, RequestAttributes.SCOPE_REQUEST) != null || response.isCommitted()) {
+            return;
+        }
+        attributes.setAttribute(STICKY_SET, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        ResponseCookie cookie = ResponseCookie.from(COOKIE, Long.toString(System.currentTimeMillis() + stickyWindow.toMillis()))
+                .path("/")
+                .maxAge(stickyWindow.plusSeconds(1))
+                .httpOnly(true)
+                .build();
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+    }
+
+    private static long primaryUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
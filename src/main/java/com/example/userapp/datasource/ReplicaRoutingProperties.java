@@ -0,0 +1,38 @@
+package com.example.userapp.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code app.datasource.routing.*}: the read replicas behind {@link ReplicaRoutingDataSource}. The
+ * primary keeps using {@code spring.datasource.*} and {@code spring.datasource.hikari.*}.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("app.datasource.routing")
+public class ReplicaRoutingProperties {
+
+    private boolean enabled;
+
+    // how long a client keeps reading from the primary after its own write
+    private Duration stickyWindow = Duration.ofSeconds(2);
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Replica {
+
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        // defaults to the primary's spring.datasource.hikari.maximum-pool-size, like every other pool setting
+        private Integer maximumPoolSize;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.userapp.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread shard selection for {@link ShardRoutingDataSource}. Connections fetched while a shard
+ * is set come from that shard; without one they come from shard 0. Like {@link DataSourceRouting}
+ * it must be set before the transaction that should use the shard fetches its connection.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    public static <T> T on(int shard, Supplier<T> work) {
+        Integer previous = SHARD.get();
+        SHARD.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                SHARD.remove();
+            } else {
+                SHARD.set(previous);
+            }
+        }
+    }
+
+    public static void run(int shard, Runnable work) {
+        on(shard, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * Returns {@code task} bound to the shard selected on this thread, for running on another thread.
+     */
+    public static Runnable wrap(Runnable task) {
+        Integer shard = SHARD.get();
+        return shard == null ? task : () -> run(shard, task);
+    }
+
+    /**
+     * Returns the shard selected on this thread, or null when none is.
+     */
+    public static Integer current() {
+        return SHARD.get();
+    }
+}
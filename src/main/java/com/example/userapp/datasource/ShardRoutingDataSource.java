@@ -0,0 +1,73 @@
+package com.example.userapp.datasource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out connections of the shard selected with {@link ShardContext}, or of shard 0 when none
+ * is. Shard 0 holds the schema Hibernate manages and the {@code users_seq} every id is drawn from;
+ * the other shards only need the {@code users} table.
+ * <p>
+ * User ids encode their shard in the low {@value #SHARD_BITS} bits, so single-user operations find
+ * the shard from the id alone. Like {@link ReplicaRoutingDataSource} this sits behind a
+ * {@code LazyConnectionDataSourceProxy}, so a transaction only takes a connection once it runs a
+ * statement.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final int SHARD_BITS = 10;
+    public static final int MAX_SHARDS = 1 << SHARD_BITS;
+
+    private final List<? extends DataSource> shards;
+
+    public ShardRoutingDataSource(List<? extends DataSource> shards) {
+        if (shards.isEmpty() || shards.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_SHARDS + " shards are supported, got " + shards.size());
+        }
+        this.shards = shards;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        // an unknown shard is a bug, not something to quietly serve from shard 0
+        setLenientFallback(false);
+    }
+
+    public int size() {
+        return shards.size();
+    }
+
+    public static int shardOf(long id) {
+        return (int) (id & (MAX_SHARDS - 1));
+    }
+
+    /**
+     * Builds the id of a user stored on {@code shard} from a value of the shared id sequence.
+     */
+    public static long encode(long sequenceValue, int shard) {
+        return (sequenceValue << SHARD_BITS) | shard;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shard = ShardContext.current();
+        return shard == null ? 0 : shard;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        // shard 0 is a bean of its own; the other pools are only owned here
+        for (DataSource shard : shards.subList(1, shards.size())) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.userapp.datasource;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@code app.datasource.sharding.*}: the shards behind {@link ShardRoutingDataSource}. Shard 0 is
+ * {@code spring.datasource.*}; {@code shards[0]} configures shard 1, {@code shards[1]} shard 2 and
+ * so on. The order is part of every stored id, so shards may be appended but never reordered.
+ */
+@Getter
+@Setter
+@ConfigurationProperties("app.datasource.sharding")
+public class ShardingProperties {
+
+    private boolean enabled;
+
+    // threads running scatter-gather reads, shared by all shards
+    private int scatterThreads = 16;
+
+    private List<Shard> shards = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class Shard {
+
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        // defaults to the primary's spring.datasource.hikari.maximum-pool-size, like every other pool setting
+        private Integer maximumPoolSize;
+    }
+}
@@ -2,8 +2,11 @@ package com.example.userapp.entity;
 
 
 import lombok.*;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
+import java.util.Locale;
 
 
 @Entity
@@ -12,11 +15,23 @@ import javax.persistence.*;
 @AllArgsConstructor
 @NoArgsConstructor
 @Builder
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_email", columnList = "email", unique = true),
+        @Index(name = "idx_users_last_first", columnList = "last_name, first_name")
+})
+@EntityListeners(UserEntityListener.class)
 public class User {
 
+    // pooled sequence (a table on MySQL): ids come from memory in blocks, which keeps JDBC insert batching on;
+    // ids assigned up front (shard-encoded ones) are kept. On MySQL db/mysql/schema.sql seeds the table past the
+    // ids of rows created while ids were IDENTITY
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @GenericGenerator(name = "users_seq", strategy = "com.example.userapp.entity.UserIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "users_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled")
+    })
     @Column(name = "id")
     private Long id;
 
@@ -28,4 +43,19 @@ public class User {
 
     @Column(name = "email")
     private String email;
+
+    @Version
+    @Column(name = "version")
+    private Long version;
+
+    // emails are stored trimmed and lower-cased so the unique index and exact lookups are case-insensitive
+    @PrePersist
+    @PreUpdate
+    void normalizeEmail() {
+        email = normalizeEmail(email);
+    }
+
+    public static String normalizeEmail(String email) {
+        return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
 }
@@ -0,0 +1,32 @@
+package com.example.userapp.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Claim of one email by one user, kept on shard 0 when the users table is sharded: each shard's
+ * unique index only sees its own rows, so this table's primary key is what keeps emails unique
+ * across shards. Read and written with plain SQL by {@link com.example.userapp.service.impl.UserShards};
+ * mapped so the table exists wherever Hibernate manages the schema.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "user_emails", indexes = @Index(name = "idx_user_emails_user", columnList = "user_id"))
+public class UserEmail {
+
+    @Id
+    @Column(name = "email")
+    private String email;
+
+    @Column(name = "user_id", nullable = false)
+    private long userId;
+}
@@ -0,0 +1,32 @@
+package com.example.userapp.entity;
+
+import com.example.userapp.event.UserChangedEvent;
+import org.springframework.context.ApplicationEventPublisher;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA lifecycle hooks for {@link User}. Instantiated by Hibernate through Spring's bean container,
+ * so the publisher is injected like any other dependency.
+ */
+public class UserEntityListener {
+
+    private final ApplicationEventPublisher publisher;
+
+    public UserEntityListener(ApplicationEventPublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void afterSave(User user) {
+        publisher.publishEvent(UserChangedEvent.saved(user));
+    }
+
+    @PostRemove
+    public void afterRemove(User user) {
+        publisher.publishEvent(UserChangedEvent.deleted(user.getId()));
+    }
+}
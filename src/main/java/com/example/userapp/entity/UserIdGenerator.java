@@ -0,0 +1,22 @@
+package com.example.userapp.entity;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.io.Serializable;
+
+/**
+ * The pooled {@code users_seq} generator, except that an id the application already set is kept.
+ * Sharding sets shard-encoded ids before the insert; every other insert leaves the id null.
+ */
+public class UserIdGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) throws HibernateException {
+        if (object instanceof User user && user.getId() != null) {
+            return user.getId();
+        }
+        return super.generate(session, object);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.userapp.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+/**
+ * A counter of committed changes shared by every instance, one row per name; read and bumped with
+ * plain SQL by {@link com.example.userapp.cache.UserWriteGeneration}. Mapped so the table exists
+ * wherever Hibernate manages the schema; db/mysql/schema.sql creates it for the prod profile.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "write_generations")
+public class WriteGeneration {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "generation", nullable = false)
+    private long generation;
+}
@@ -0,0 +1,36 @@
+package com.example.userapp.event;
+
+import com.example.userapp.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Published whenever a user row is inserted, updated or deleted. Listeners that keep in-memory
+ * views of the users table subscribe with {@code @TransactionalEventListener} so they only see
+ * committed changes.
+ */
+@Getter
+@AllArgsConstructor
+public class UserChangedEvent {
+
+    public enum Type {
+        SAVED,
+        DELETED
+    }
+
+    private final Type type;
+    private final long id;
+    private final String firstName;
+    private final String lastName;
+    private final String email;
+    // the version the row has after the change, so in-memory views can hand it out for conditional updates
+    private final Long version;
+
+    public static UserChangedEvent saved(User user) {
+        return new UserChangedEvent(Type.SAVED, user.getId(), user.getFirstName(), user.getLastName(), user.getEmail(), user.getVersion());
+    }
+
+    public static UserChangedEvent deleted(long id) {
+        return new UserChangedEvent(Type.DELETED, id, null, null, null, null);
+    }
+}
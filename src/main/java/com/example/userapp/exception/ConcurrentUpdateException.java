@@ -0,0 +1,12 @@
+package com.example.userapp.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class ConcurrentUpdateException extends RuntimeException {
+
+    public ConcurrentUpdateException(String res, long id, long version) {
+        super(String.format("%s with ID: %s was modified concurrently, expected version %s", res, id, version));
+    }
+}
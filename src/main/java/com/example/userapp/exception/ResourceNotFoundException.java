@@ -9,4 +9,8 @@ public class ResourceNotFoundException extends RuntimeException {
     public ResourceNotFoundException(String res, long id) {
         super(String.format("%s not found for ID: %s", res, id));
     }
+
+    public ResourceNotFoundException(String res, String field, String value) {
+        super(String.format("%s not found for %s: %s", res, field, value));
+    }
 }
@@ -0,0 +1,10 @@
+package com.example.userapp.mapper;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.payload.UserDto;
+
+public interface UserMapper {
+
+    UserDto toDto(User user);
+    User toEntity(UserDto userDto);
+}
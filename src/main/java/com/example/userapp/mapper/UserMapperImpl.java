@@ -0,0 +1,38 @@
+package com.example.userapp.mapper;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.payload.UserDto;
+import org.springframework.stereotype.Component;
+
+/**
+ * Plain field copies: no reflection, no type maps, one allocation per call.
+ */
+@Component
+public class UserMapperImpl implements UserMapper {
+
+    @Override
+    public UserDto toDto(User user) {
+        if (user == null) {
+            return null;
+        }
+        UserDto userDto = new UserDto();
+        userDto.setId(user.getId());
+        userDto.setFirstName(user.getFirstName());
+        userDto.setLastName(user.getLastName());
+        userDto.setEmail(user.getEmail());
+        userDto.setVersion(user.getVersion());
+        return userDto;
+    }
+
+    @Override
+    public User toEntity(UserDto userDto) {
+        if (userDto == null) {
+            return null;
+        }
+        User user = new User();
+        user.setFirstName(userDto.getFirstName());
+        user.setLastName(userDto.getLastName());
+        user.setEmail(userDto.getEmail());
+        return user;
+    }
+}
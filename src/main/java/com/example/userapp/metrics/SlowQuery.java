@@ -0,0 +1,21 @@
+package com.example.userapp.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * One statement, or one JDBC batch, that took at least {@code app.sql.slow-query.threshold}, and the
+ * request that issued it. For a batch {@code sql} holds every distinct statement it ran, joined by
+ * {@code "; "}, and the duration is that of the whole batch.
+ */
+@Getter
+@AllArgsConstructor
+public class SlowQuery {
+    private final String sql;
+    private final boolean batch;
+    private final double durationMillis;
+    private final String request;
+    private final Instant executedAt;
+}
@@ -0,0 +1,51 @@
+package com.example.userapp.metrics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The last {@code app.sql.slow-query.log-size} slow statements of HTTP requests, in a ring buffer that
+ * overwrites the oldest entry; read back slowest first.
+ */
+@Component
+public class SlowQueryLog {
+
+    private final SlowQuery[] entries;
+    private long written;
+
+    public SlowQueryLog(@Value("${app.sql.slow-query.log-size:100}") int size) {
+        this.entries = new SlowQuery[Math.max(1, size)];
+    }
+
+    public synchronized void record(SlowQuery query) {
+        entries[(int) (written++ % entries.length)] = query;
+    }
+
+    public synchronized List<SlowQuery> slowest() {
+        List<SlowQuery> queries = new ArrayList<>(entries.length);
+        for (SlowQuery query : entries) {
+            if (query != null) {
+                queries.add(query);
+            }
+        }
+        queries.sort(Comparator.comparingDouble(SlowQuery::getDurationMillis).reversed());
+        return queries;
+    }
+
+    /**
+     * Returns how many slow statements were recorded since the last clear, including overwritten ones.
+     */
+    public synchronized long recorded() {
+        return written;
+    }
+
+    public synchronized void clear() {
+        Arrays.fill(entries, null);
+        written = 0;
+    }
+}
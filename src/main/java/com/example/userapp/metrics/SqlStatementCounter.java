@@ -0,0 +1,203 @@
+package com.example.userapp.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Counts the SQL statements Hibernate prepares on the current thread, and the time spent executing
+ * them, between {@link #start} and {@link #close}. Fed by {@link SqlStatementInspector} and
+ * {@link SqlTimingSessionListener}; {@link SqlStatementFilter} opens one per HTTP request.
+ * <p>
+ * A batch counts once per flush, as it costs one round trip. Work handed to other threads is only
+ * counted when the task was {@link #wrap wrapped} (the async user service does this); streaming
+ * handlers, shard scatter and plain JDBC outside Hibernate are not counted. Counters nest: closing
+ * one restores the counter that was current when it started. Counting is synchronized, as wrapped
+ * tasks may add to one counter from several threads.
+ * <p>
+ * A slow execution is charged to the statements the executing thread prepared and has not run yet:
+ * a single statement to the last of them, a batch to all of them, as Hibernate prepares each
+ * statement of a batch up front and runs them together at flush.
+ */
+public final class SqlStatementCounter implements AutoCloseable {
+
+    private static final ThreadLocal<SqlStatementCounter> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Deque<String>> UNEXECUTED = new ThreadLocal<>();
+    // statements kept verbatim for messages; repeated SELECTs are tracked for every distinct statement
+    private static final int MAX_KEPT_STATEMENTS = 100;
+    private static final int MAX_DISTINCT_SELECTS = 1000;
+
+    private final SqlStatementCounter previous;
+    private final long slowQueryNanos;
+    private final List<String> statements = new ArrayList<>();
+    private final Map<String, Integer> selects = new LinkedHashMap<>();
+    private final List<SlowQuery> slowQueries = new ArrayList<>();
+    private int statementCount;
+    private long executionNanos;
+
+    private SqlStatementCounter(SqlStatementCounter previous, long slowQueryNanos) {
+        this.previous = previous;
+        this.slowQueryNanos = slowQueryNanos;
+    }
+
+    /**
+     * Starts counting on this thread, keeping statements that take at least {@code slowQueryThreshold}.
+     */
+    public static SqlStatementCounter start(Duration slowQueryThreshold) {
+        SqlStatementCounter counter = new SqlStatementCounter(CURRENT.get(), slowQueryThreshold.toNanos());
+        CURRENT.set(counter);
+        return counter;
+    }
+
+    /**
+     * Starts counting on this thread without keeping slow statements.
+     */
+    public static SqlStatementCounter start() {
+        return start(Duration.ofNanos(Long.MAX_VALUE));
+    }
+
+    /**
+     * Returns the counter of this thread, or {@code null} outside {@link #start}/{@link #close}.
+     */
+    public static SqlStatementCounter current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Returns {@code task} counting into this thread's counter, for running on another thread.
+     */
+    public static Runnable wrap(Runnable task) {
+        SqlStatementCounter counter = CURRENT.get();
+        if (counter == null) {
+            return task;
+        }
+        return () -> {
+            SqlStatementCounter previous = CURRENT.get();
+            CURRENT.set(counter);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    CURRENT.remove();
+                    UNEXECUTED.remove();
+                } else {
+                    CURRENT.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Removes and returns the statement an execution starting on this thread runs: the last one
+     * prepared here and not yet run, or {@code null} when there is none.
+     */
+    static String takeStatement() {
+        Deque<String> unexecuted = UNEXECUTED.get();
+        return unexecuted == null ? null : unexecuted.pollLast();
+    }
+
+    /**
+     * Removes and returns the statements a batch starting on this thread runs: every distinct one
+     * prepared here and not yet run, joined by {@code "; "}, or {@code null} when there is none.
+     */
+    static String takeBatch() {
+        Deque<String> unexecuted = UNEXECUTED.get();
+        if (unexecuted == null || unexecuted.isEmpty()) {
+            return null;
+        }
+        String statements = String.join("; ", new LinkedHashSet<>(unexecuted));
+        unexecuted.clear();
+        return statements;
+    }
+
+    synchronized void prepared(String sql) {
+        statementCount++;
+        Deque<String> unexecuted = UNEXECUTED.get();
+        if (unexecuted == null) {
+            unexecuted = new ArrayDeque<>();
+            UNEXECUTED.set(unexecuted);
+        }
+        if (unexecuted.size() >= MAX_KEPT_STATEMENTS) {
+            unexecuted.removeFirst();
+        }
+        unexecuted.addLast(sql);
+        if (statements.size() < MAX_KEPT_STATEMENTS) {
+            statements.add(sql);
+        }
+        if (sql.stripLeading().toLowerCase(Locale.ROOT).startsWith("select")
+                && (selects.size() < MAX_DISTINCT_SELECTS || selects.containsKey(sql))) {
+            selects.merge(sql, 1, Integer::sum);
+        }
+    }
+
+    synchronized void executed(String sql, boolean batch, long nanos) {
+        executionNanos += nanos;
+        if (nanos >= slowQueryNanos && sql != null) {
+            slowQueries.add(new SlowQuery(sql, batch, nanos / 1_000_000.0, null, Instant.now()));
+        }
+    }
+
+    public synchronized int statementCount() {
+        return statementCount;
+    }
+
+    public synchronized Duration executionTime() {
+        return Duration.ofNanos(executionNanos);
+    }
+
+    /**
+     * Returns the first statements prepared, in order.
+     */
+    public synchronized List<String> statements() {
+        return List.copyOf(statements);
+    }
+
+    /**
+     * Returns the SELECTs prepared at least {@code times} times with their counts: the same query
+     * issued once per row of an earlier result is the signature of an N+1.
+     */
+    public synchronized Map<String, Integer> repeatedSelects(int times) {
+        Map<String, Integer> repeated = new LinkedHashMap<>();
+        selects.forEach((sql, count) -> {
+            if (count >= times) {
+                repeated.put(sql, count);
+            }
+        });
+        return repeated;
+    }
+
+    /**
+     * Returns the statements that took at least the slow-query threshold, not yet tied to a request.
+     */
+    public synchronized List<SlowQuery> slowQueries() {
+        return List.copyOf(slowQueries);
+    }
+
+    /**
+     * Forgets everything counted so far and keeps counting.
+     */
+    public synchronized void reset() {
+        statementCount = 0;
+        executionNanos = 0;
+        statements.clear();
+        selects.clear();
+        slowQueries.clear();
+    }
+
+    @Override
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+            UNEXECUTED.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
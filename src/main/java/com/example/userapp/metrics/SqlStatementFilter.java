@@ -0,0 +1,84 @@
+package com.example.userapp.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Counts the statements and the database time of every HTTP request with a {@link SqlStatementCounter}.
+ * Requests issuing more than {@code max-per-request} statements, spending more than
+ * {@code max-time-per-request} in the database or repeating one SELECT {@code n-plus-one-threshold}
+ * times are logged as warnings; statements slower than {@code app.sql.slow-query.threshold} go to
+ * the {@link SlowQueryLog}. The counter is left on the request as attribute {@link #COUNTER_ATTRIBUTE}.
+ * Async requests are reported once their result is dispatched back, including the statements of work
+ * handed off with {@link SqlStatementCounter#wrap}.
+ */
+public class SqlStatementFilter extends OncePerRequestFilter {
+
+    public static final String COUNTER_ATTRIBUTE = SqlStatementFilter.class.getName() + ".COUNTER";
+
+    private static final Logger log = LoggerFactory.getLogger(SqlStatementFilter.class);
+
+    private final SlowQueryLog slowQueryLog;
+    private final int maxStatements;
+    private final Duration maxTime;
+    private final int nPlusOneThreshold;
+    private final Duration slowQueryThreshold;
+
+    public SqlStatementFilter(SlowQueryLog slowQueryLog, int maxStatements, Duration maxTime,
+                              int nPlusOneThreshold, Duration slowQueryThreshold) {
+        this.slowQueryLog = slowQueryLog;
+        this.maxStatements = maxStatements;
+        this.maxTime = maxTime;
+        this.nPlusOneThreshold = nPlusOneThreshold;
+        this.slowQueryThreshold = slowQueryThreshold;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        // async handlers finish on another thread; the request is reported when it is dispatched back
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlStatementCounter counter = (SqlStatementCounter) request.getAttribute(COUNTER_ATTRIBUTE);
+        boolean resumed = counter != null && isAsyncDispatch(request);
+        if (!resumed) {
+            counter = SqlStatementCounter.start(slowQueryThreshold);
+            request.setAttribute(COUNTER_ATTRIBUTE, counter);
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!resumed) {
+                counter.close();
+            }
+            if (!isAsyncStarted(request)) {
+                report(request.getMethod() + " " + request.getRequestURI(), counter);
+            }
+        }
+    }
+
+    private void report(String request, SqlStatementCounter counter) {
+        long millis = counter.executionTime().toMillis();
+        if (counter.statementCount() > maxStatements || counter.executionTime().compareTo(maxTime) > 0) {
+            log.warn("{} issued {} statements taking {} ms", request, counter.statementCount(), millis);
+        }
+        for (Map.Entry<String, Integer> repeated : counter.repeatedSelects(nPlusOneThreshold).entrySet()) {
+            log.warn("{} ran the same select {} times, possible N+1: {}", request, repeated.getValue(), repeated.getKey());
+        }
+        for (SlowQuery query : counter.slowQueries()) {
+            slowQueryLog.record(new SlowQuery(query.getSql(), query.isBatch(), query.getDurationMillis(), request, query.getExecutedAt()));
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.userapp.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hibernate hook called for every statement it prepares; reports it to the thread's
+ * {@link SqlStatementCounter}, if one is running, and leaves the SQL unchanged. Registered with
+ * {@code hibernate.session_factory.statement_inspector}.
+ */
+public class SqlStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        SqlStatementCounter counter = SqlStatementCounter.current();
+        if (counter != null) {
+            counter.prepared(sql);
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.userapp.metrics;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Times statement and batch executions of one Hibernate session and adds them to the thread's
+ * {@link SqlStatementCounter}. Hibernate creates one per session from
+ * {@code hibernate.session.events.auto}. The statements are taken when the execution starts, so a
+ * timing is never charged to a statement prepared later.
+ */
+public class SqlTimingSessionListener extends BaseSessionEventListener {
+
+    private long started;
+    private String sql;
+    private boolean batch;
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        sql = SqlStatementCounter.takeStatement();
+        batch = false;
+        started = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        executed();
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        sql = SqlStatementCounter.takeBatch();
+        batch = true;
+        started = System.nanoTime();
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        executed();
+    }
+
+    private void executed() {
+        SqlStatementCounter counter = SqlStatementCounter.current();
+        if (counter != null) {
+            counter.executed(sql, batch, System.nanoTime() - started);
+        }
+        sql = null;
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.userapp.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every {@code UserService} call as {@code user.service}, tagged with the method name and the
+ * exception thrown, if any. Percentiles and histogram buckets come from the
+ * {@code management.metrics.distribution.*.user.service} properties.
+ */
+@Aspect
+@Component
+public class UserServiceMetricsAspect {
+
+    static final String METRIC_NAME = "user.service";
+
+    private final MeterRegistry registry;
+
+    public UserServiceMetricsAspect(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("execution(* com.example.userapp.service.UserService.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Timer.Sample sample = Timer.start(registry);
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(METRIC_NAME)
+                    .description("Latency of UserService methods")
+                    .tag("method", joinPoint.getSignature().getName())
+                    .tag("exception", exception)
+                    .register(registry));
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.userapp.payload;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchCreateResponse {
+    private int total;
+    private int created;
+    private int rejected;
+    private List<BatchItemResult> results;
+}
@@ -0,0 +1,24 @@
+package com.example.userapp.payload;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BatchItemResult {
+
+    public enum Status {
+        CREATED,
+        REJECTED
+    }
+
+    // position of the item in the request body
+    private int index;
+    private Status status;
+    private UserDto user;
+    private List<String> errors;
+}
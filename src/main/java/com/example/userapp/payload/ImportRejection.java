@@ -0,0 +1,16 @@
+package com.example.userapp.payload;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportRejection {
+    // 1-based line number in the uploaded file
+    private long line;
+    private List<String> errors;
+}
@@ -0,0 +1,19 @@
+package com.example.userapp.payload;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImportSummary {
+    // data rows read, excluding the header and blank lines
+    private long rows;
+    private long accepted;
+    private long rejected;
+    // the first rejections only; rejected may be larger than this list
+    private List<ImportRejection> rejections;
+}
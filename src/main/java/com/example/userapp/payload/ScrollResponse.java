@@ -0,0 +1,24 @@
+package com.example.userapp.payload;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * One window of a keyset (cursor) scroll. {@code nextCursor} is opaque to clients and is
+ * {@code null} once the last window has been returned.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ScrollResponse<T> {
+    private List<T> content;
+    private int size;
+    private String nextCursor;
+
+    public boolean isHasNext() {
+        return nextCursor != null;
+    }
+}
@@ -11,6 +11,9 @@ import lombok.*;
 @AllArgsConstructor
 @Builder
 public class UserDto{
+    // assigned by the server; ignored on create and update
+    private Long id;
+
     @NotEmpty
     @Size(min = 2, message = "First Name should have at least 2 characters" )
     private String firstName;
@@ -22,4 +25,7 @@ public class UserDto{
     @NotEmpty
     @Email
     private String email;
+
+    // optimistic-concurrency token; updates need it (or If-Match) and only apply to this version
+    private Long version;
 }
@@ -0,0 +1,23 @@
+package com.example.userapp.payload;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WriteBehindStatus {
+
+    public enum State {
+        PENDING,
+        STORED,
+        FAILED
+    }
+
+    // the id returned with the 202
+    private long id;
+    private State state;
+    // why the insert failed, only for FAILED
+    private String reason;
+}
@@ -1,16 +1,42 @@
 package com.example.userapp.repository;
 
 import com.example.userapp.entity.User;
+import com.example.userapp.payload.UserDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
 
 public interface UserRepository extends JpaRepository<User, Long> {
+
+    // constructor projection: rows are selected straight into detached DTOs, never into the persistence context
+    String USER_DTO = "new com.example.userapp.payload.UserDto(u.id, u.firstName, u.lastName, u.email, u.version)";
+    String SEARCH_PREDICATE = "(u.firstName LIKE CONCAT('%', :query, '%') " +
+            "OR u.lastName LIKE CONCAT('%', :query, '%') " +
+            "OR u.email LIKE CONCAT('%', :query, '%'))";
+
     Optional<User> findById(long id);
+
+    // served by the unique idx_users_email index; pass a normalized email (User.normalizeEmail)
+    Optional<User> findByEmail(String email);
+
+    boolean existsByEmail(String email);
+
+    boolean existsByEmailAndIdNot(String email, long id);
+
     @Query("SELECT u FROM User u WHERE " +
             "u.firstName LIKE CONCAT('%',:query, '%')" +
             "Or u.lastName LIKE CONCAT('%', :query, '%')"+
@@ -19,5 +45,83 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Page<User> findByFirstNameContainingOrLastNameContainingOrEmailContaining(String q,String q1,String q2, Pageable pageable);
 
+    @Query(value = "SELECT " + USER_DTO + " FROM User u",
+            countQuery = "SELECT COUNT(u) FROM User u")
+    Page<UserDto> findAllProjected(Pageable pageable);
+
+    @Query("SELECT " + USER_DTO + " FROM User u WHERE " + SEARCH_PREDICATE)
+    List<UserDto> searchProjected(String query);
+
+    @Query(value = "SELECT " + USER_DTO + " FROM User u WHERE " + SEARCH_PREDICATE,
+            countQuery = "SELECT COUNT(u) FROM User u WHERE " + SEARCH_PREDICATE)
+    Page<UserDto> searchProjected(String query, Pageable pageable);
+
+    // a Slice return type makes Spring Data fetch size + 1 rows for hasNext and skip the COUNT query
+    @Query("SELECT " + USER_DTO + " FROM User u WHERE " + SEARCH_PREDICATE)
+    Slice<UserDto> searchProjectedSlice(String query, Pageable pageable);
+
+    @Query("SELECT COUNT(u) FROM User u WHERE " + SEARCH_PREDICATE)
+    long countSearch(String query);
+
+    // fallback for autocomplete until the in-memory trie is built; trailing wildcards only, so indexes apply. Like the
+    // trie it matches the email's local part only; the prefix must have its LIKE wildcards escaped with '!'
+    @Query("SELECT " + USER_DTO + " FROM User u WHERE u.firstName LIKE CONCAT(:prefix, '%') ESCAPE '!' " +
+            "OR u.lastName LIKE CONCAT(:prefix, '%') ESCAPE '!' OR u.email LIKE CONCAT(:prefix, '%@%') ESCAPE '!' ORDER BY u.id")
+    List<UserDto> autocompleteProjected(String prefix, Pageable pageable);
+
+    @Query("SELECT " + USER_DTO + " FROM User u WHERE u.id > :after ORDER BY u.id")
+    List<UserDto> findProjectedAfter(long after, Pageable pageable);
+
+    @Query("SELECT " + USER_DTO + " FROM User u WHERE u.id > :after AND " + SEARCH_PREDICATE + " ORDER BY u.id")
+    List<UserDto> searchProjectedAfter(String query, long after, Pageable pageable);
+
+    /**
+     * Streams every user row through a forward-only cursor. Must be consumed inside a transaction
+     * and closed by the caller; entities are loaded read-only so no dirty-checking snapshot is kept.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT u FROM User u")
+    Stream<User> streamAll();
+
+    /**
+     * Streams every stored email through a forward-only cursor; same contract as {@link #streamAll()}.
+     */
+    @QueryHints({
+            @QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT u.email FROM User u")
+    Stream<String> streamAllEmails();
+
+    /**
+     * The stored version of the user, read without loading the entity.
+     */
+    @Query("SELECT u.version FROM User u WHERE u.id = :id")
+    Optional<Long> findVersionById(long id);
+
+    /**
+     * Updates the user in a single statement, without loading it first, and bumps its version;
+     * only applies when the stored version still equals {@code version}.
+     *
+     * @return the number of rows updated, 0 when the user does not exist or was changed concurrently
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE User u SET u.firstName = :firstName, u.lastName = :lastName, u.email = :email, " +
+            "u.version = u.version + 1 WHERE u.id = :id AND u.version = :version")
+    int updateByIdAndVersion(long id, long version, String firstName, String lastName, String email);
 
+    /**
+     * Deletes the user in a single statement, without loading it first.
+     *
+     * @return the number of rows deleted, 0 when no user has this id
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM User u WHERE u.id = :id")
+    int removeById(long id);
 }
@@ -0,0 +1,265 @@
+package com.example.userapp.search;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.service.impl.UserShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Bloom filter over the normalized emails of all users, so that checking a new email for a
+ * duplicate only costs a query when the filter says it might be taken.
+ * <p>
+ * This is a plain (not counting) filter: the single-statement update and delete paths never load
+ * the old email, so it cannot be removed. Removed and replaced emails therefore linger as extra
+ * false positives, which only cost the exact check they would have cost anyway. The filter is
+ * rebuilt from the database when its fill ratio or its observed false-positive rate drifts past
+ * twice the configured target. Until the first build completes every check falls through to the
+ * exact query.
+ */
+@Component
+public class EmailBloomFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailBloomFilter.class);
+    // below this many negative outcomes the observed rate is too noisy to act on
+    private static final long MIN_OBSERVATIONS = 1000;
+
+    private final UserRepository repository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final UserShards shards;
+    private final long expectedInsertions;
+    private final double targetFalsePositiveRate;
+    private final boolean enabled;
+
+    private final Object writeLock = new Object();
+    private volatile Bits bits;
+    private List<String> addedDuringRebuild;
+
+    private final AtomicLong definiteMisses = new AtomicLong();
+    private final AtomicLong possibleHits = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    public EmailBloomFilter(UserRepository repository,
+                            PlatformTransactionManager transactionManager,
+                            UserShards shards,
+                            @Value("${app.users.email-filter.expected-insertions:1000000}") long expectedInsertions,
+                            @Value("${app.users.email-filter.false-positive-rate:0.01}") double targetFalsePositiveRate,
+                            @Value("${app.users.email-filter.enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shards = shards;
+        this.expectedInsertions = expectedInsertions;
+        this.targetFalsePositiveRate = targetFalsePositiveRate;
+        this.enabled = enabled;
+    }
+
+    public boolean isReady() {
+        return bits != null;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Sizes a fresh filter for the current row count, fills it from the database and swaps it in.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            addedDuringRebuild = new ArrayList<>();
+        }
+        try {
+            // from the primary, like the search index rebuild
+            Bits fresh = DataSourceRouting.onPrimary(() -> {
+                long rows = shards.scatter(repository::count).stream().mapToLong(Long::longValue).sum();
+                Bits filter = Bits.create(Math.max(expectedInsertions, rows * 2), targetFalsePositiveRate);
+                shards.forEachShard(() -> readOnlyTransaction.executeWithoutResult(status -> {
+                    try (Stream<String> emails = repository.streamAllEmails()) {
+                        emails.forEach(filter::put);
+                    }
+                }));
+                return filter;
+            });
+            synchronized (writeLock) {
+                addedDuringRebuild.forEach(fresh::put);
+                bits = fresh;
+            }
+            definiteMisses.set(0);
+            possibleHits.set(0);
+            falsePositives.set(0);
+            log.info("Email filter built with {} emails in {} bits ({} hash functions) in {} ms",
+                    fresh.insertions.get(), fresh.size, fresh.hashFunctions, (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            synchronized (writeLock) {
+                addedDuringRebuild = null;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the email is already used. A definite miss in the filter answers without a
+     * query; a possible hit is confirmed with {@code exactCheck}, which receives the normalized email.
+     */
+    public boolean isTaken(String email, Predicate<String> exactCheck) {
+        String normalized = User.normalizeEmail(email);
+        Bits filter = bits;
+        if (filter == null) {
+            return exactCheck.test(normalized);
+        }
+        if (!filter.mightContain(normalized)) {
+            definiteMisses.incrementAndGet();
+            return false;
+        }
+        possibleHits.incrementAndGet();
+        boolean taken = exactCheck.test(normalized);
+        if (!taken) {
+            falsePositives.incrementAndGet();
+        }
+        return taken;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getType() != UserChangedEvent.Type.SAVED || event.getEmail() == null) {
+            return;
+        }
+        String email = User.normalizeEmail(event.getEmail());
+        synchronized (writeLock) {
+            Bits filter = bits;
+            if (filter != null) {
+                filter.put(email);
+            }
+            if (addedDuringRebuild != null) {
+                addedDuringRebuild.add(email);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.users.email-filter.check-interval:PT5M}", initialDelayString = "${app.users.email-filter.check-interval:PT5M}")
+    public void rebuildIfDegraded() {
+        if (!enabled || !isReady()) {
+            return;
+        }
+        EmailFilterStatistics stats = statistics();
+        boolean saturated = stats.getExpectedFalsePositiveRate() > 2 * targetFalsePositiveRate;
+        boolean stale = stats.getDefiniteMisses() + stats.getFalsePositives() >= MIN_OBSERVATIONS
+                && stats.getObservedFalsePositiveRate() > 2 * targetFalsePositiveRate;
+        if (saturated || stale) {
+            log.info("Rebuilding email filter: expected fpp {}, observed fpp {}",
+                    stats.getExpectedFalsePositiveRate(), stats.getObservedFalsePositiveRate());
+            rebuild();
+        }
+    }
+
+    public EmailFilterStatistics statistics() {
+        Bits filter = bits;
+        long misses = definiteMisses.get();
+        long falseHits = falsePositives.get();
+        double observed = misses + falseHits == 0 ? 0.0 : (double) falseHits / (misses + falseHits);
+        if (filter == null) {
+            return new EmailFilterStatistics(false, 0, 0, 0, 1.0, misses, possibleHits.get(), falseHits, observed);
+        }
+        return new EmailFilterStatistics(true, filter.size, filter.hashFunctions, filter.insertions.get(),
+                filter.expectedFalsePositiveRate(), misses, possibleHits.get(), falseHits, observed);
+    }
+
+    private static final class Bits {
+        private final AtomicLongArray words;
+        private final long size;
+        private final int hashFunctions;
+        private final AtomicLong bitCount = new AtomicLong();
+        private final AtomicLong insertions = new AtomicLong();
+
+        private Bits(long size, int hashFunctions) {
+            this.words = new AtomicLongArray((int) ((size + 63) / 64));
+            this.size = size;
+            this.hashFunctions = hashFunctions;
+        }
+
+        // m = -n ln p / (ln 2)^2 bits and k = m / n ln 2 hash functions
+        static Bits create(long expectedInsertions, double falsePositiveRate) {
+            long size = Math.max(64, (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+            int hashFunctions = Math.max(1, (int) Math.round((double) size / expectedInsertions * Math.log(2)));
+            return new Bits(size, hashFunctions);
+        }
+
+        void put(String email) {
+            long hash1 = hash(email);
+            long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashFunctions; i++) {
+                setBit(Math.floorMod(hash1 + i * hash2, size));
+            }
+            insertions.incrementAndGet();
+        }
+
+        boolean mightContain(String email) {
+            long hash1 = hash(email);
+            long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashFunctions; i++) {
+                long bit = Math.floorMod(hash1 + i * hash2, size);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        double expectedFalsePositiveRate() {
+            return Math.pow((double) bitCount.get() / size, hashFunctions);
+        }
+
+        private void setBit(long bit) {
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0) {
+                    return;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+            bitCount.incrementAndGet();
+        }
+
+        // FNV-1a over the UTF-16 code units, finished with the murmur3 64-bit mixer
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        private static long mix(long hash) {
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.userapp.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+@Getter
+@AllArgsConstructor
+public class EmailFilterStatistics {
+    private final boolean ready;
+    private final long bits;
+    private final int hashFunctions;
+    private final long insertions;
+    // false-positive probability implied by the current fill ratio
+    private final double expectedFalsePositiveRate;
+    private final long definiteMisses;
+    private final long possibleHits;
+    private final long falsePositives;
+    // false positives among all checks for emails that turned out to be free
+    private final double observedFalsePositiveRate;
+}
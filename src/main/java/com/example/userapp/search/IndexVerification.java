@@ -0,0 +1,21 @@
+package com.example.userapp.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Result of comparing an in-memory index with the users table.
+ */
+@Getter
+@AllArgsConstructor
+public class IndexVerification {
+    private final long indexedDocuments;
+    private final long databaseRows;
+    private final long missing;
+    private final long stale;
+    private final long orphaned;
+
+    public boolean isConsistent() {
+        return missing == 0 && stale == 0 && orphaned == 0;
+    }
+}
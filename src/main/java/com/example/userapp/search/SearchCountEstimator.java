@@ -0,0 +1,45 @@
+package com.example.userapp.search;
+
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.service.impl.UserShards;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Cheap total for search pages whose clients only need a ballpark figure.
+ * <p>
+ * Once the {@link UserSearchIndex} is ready the count comes from it, which is exact as of the last
+ * committed change and costs no database round trip. Until then the wildcard {@code COUNT} query
+ * runs at most once per query string per TTL; totals may lag writes by up to that TTL.
+ */
+@Component
+public class SearchCountEstimator {
+
+    private final UserRepository repository;
+    private final UserSearchIndex searchIndex;
+    private final UserShards shards;
+    private final Cache<String, Long> counts;
+
+    public SearchCountEstimator(UserRepository repository, UserSearchIndex searchIndex, UserShards shards,
+                                @Value("${app.search.count-cache.maximum-size:1000}") long maximumSize,
+                                @Value("${app.search.count-cache.expire-after-write:1m}") Duration expireAfterWrite) {
+        this.repository = repository;
+        this.searchIndex = searchIndex;
+        this.shards = shards;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .build();
+    }
+
+    public long estimate(String query) {
+        if (searchIndex.isReady()) {
+            return searchIndex.count(query);
+        }
+        return counts.get(query, key -> shards.scatter(() -> repository.countSearch(key)).stream().mapToLong(Long::longValue).sum());
+    }
+}
@@ -0,0 +1,475 @@
+package com.example.userapp.search;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.service.impl.UserShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Typeahead over first name, last name and the local part of the email, kept in a radix trie
+ * (edges carry whole runs of characters, so the node count grows with the number of distinct
+ * terms rather than their total length). Every node keeps the best {@code top-k} users of its
+ * subtree, ranked by the shortest matching term, then alphabetically, then by id; a lookup walks
+ * the prefix and returns that list, so it costs O(prefix length) and never touches the database.
+ * <p>
+ * Readers never lock: writers replace a node's children and top-k arrays instead of mutating
+ * them. Like {@link UserSearchIndex} the trie is built once the application is ready and then
+ * follows committed {@link UserChangedEvent}s.
+ */
+@Component
+public class UserAutocompleteIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserAutocompleteIndex.class);
+
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+    private static final Comparator<Entry> RANK = Comparator.<Entry>comparingInt(entry -> entry.term.length())
+            .thenComparing(entry -> entry.term)
+            .thenComparingLong(entry -> entry.user.id);
+
+    private final UserRepository repository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final UserShards shards;
+    private final int topK;
+    private final boolean enabled;
+
+    private final Object writeLock = new Object();
+    private volatile Trie current;
+    private volatile boolean ready;
+    // changes committed while a rebuild is streaming rows; replayed on top of the fresh trie
+    private Map<Long, UserChangedEvent> pendingDuringRebuild;
+
+    public UserAutocompleteIndex(UserRepository repository,
+                                 PlatformTransactionManager transactionManager,
+                                 UserShards shards,
+                                 @Value("${app.search.autocomplete.top-k:10}") int topK,
+                                 @Value("${app.search.autocomplete.enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shards = shards;
+        this.topK = topK;
+        this.enabled = enabled;
+        this.current = new Trie(topK);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Largest {@code limit} {@link #suggest} can honour.
+     */
+    public int getTopK() {
+        return topK;
+    }
+
+    public int size() {
+        return current.users.size();
+    }
+
+    public int nodeCount() {
+        return current.nodes;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the trie from the database and atomically swaps it in.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            pendingDuringRebuild = new HashMap<>();
+        }
+        Trie fresh = new Trie(topK);
+        try {
+            // from the primary, like the search index rebuild
+            DataSourceRouting.runOnPrimary(() -> shards.forEachShard(() -> readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<User> users = repository.streamAll()) {
+                    users.forEach(user -> fresh.put(Suggestion.of(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail(), user.getVersion())));
+                }
+            })));
+            synchronized (writeLock) {
+                pendingDuringRebuild.values().forEach(fresh::apply);
+                current = fresh;
+                ready = true;
+            }
+        } finally {
+            synchronized (writeLock) {
+                pendingDuringRebuild = null;
+            }
+        }
+        log.info("User autocomplete trie built with {} users in {} nodes in {} ms",
+                fresh.users.size(), fresh.nodes, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        synchronized (writeLock) {
+            current.apply(event);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.put(event.getId(), event);
+            }
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} (at most {@link #getTopK()}) users with a first name, last name or
+     * email local part starting with {@code prefix}, case-insensitively, best ranked first.
+     */
+    public List<UserDto> suggest(String prefix, int limit) {
+        String needle = normalize(prefix);
+        if (needle.isEmpty()) {
+            return List.of();
+        }
+        Node node = current.root;
+        int matched = 0;
+        while (matched < needle.length()) {
+            Node child = node.child(needle.charAt(matched));
+            if (child == null) {
+                return List.of();
+            }
+            int length = Math.min(child.edge.length(), needle.length() - matched);
+            if (!child.edge.regionMatches(0, needle, matched, length)) {
+                return List.of();
+            }
+            matched += length;
+            node = child;
+        }
+        Entry[] top = node.top;
+        List<UserDto> users = new ArrayList<>(Math.min(limit, top.length));
+        for (int i = 0; i < top.length && i < limit; i++) {
+            users.add(top[i].user.toDto());
+        }
+        return users;
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static String localPart(String email) {
+        String normalized = normalize(email);
+        int at = normalized.indexOf('@');
+        return at < 0 ? normalized : normalized.substring(0, at);
+    }
+
+    private static final class Trie {
+        private final int topK;
+        private final Node root = new Node("");
+        private final Map<Long, Suggestion> users = new HashMap<>();
+        private int nodes = 1;
+
+        Trie(int topK) {
+            this.topK = topK;
+        }
+
+        void apply(UserChangedEvent event) {
+            if (event.getType() == UserChangedEvent.Type.DELETED) {
+                remove(event.getId());
+            } else {
+                put(Suggestion.of(event.getId(), event.getFirstName(), event.getLastName(), event.getEmail(), event.getVersion()));
+            }
+        }
+
+        void put(Suggestion user) {
+            remove(user.id);
+            users.put(user.id, user);
+            for (String term : user.terms()) {
+                insert(new Entry(term, user));
+            }
+        }
+
+        void remove(long id) {
+            Suggestion previous = users.remove(id);
+            if (previous == null) {
+                return;
+            }
+            for (String term : previous.terms()) {
+                delete(term, id);
+            }
+        }
+
+        private void insert(Entry entry) {
+            String term = entry.term;
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int matched = 0;
+            while (matched < term.length()) {
+                Node child = node.child(term.charAt(matched));
+                if (child == null) {
+                    Node leaf = new Node(term.substring(matched));
+                    nodes++;
+                    node.addChild(leaf);
+                    node = leaf;
+                    path.add(leaf);
+                    matched = term.length();
+                    break;
+                }
+                int common = commonPrefix(child.edge, term, matched);
+                if (common < child.edge.length()) {
+                    // split the edge: node -> middle -> rest of the old child
+                    Node middle = new Node(child.edge.substring(0, common));
+                    middle.children = new Node[]{child.withEdge(child.edge.substring(common))};
+                    middle.top = child.top;
+                    nodes++;
+                    node.replaceChild(child, middle);
+                    child = middle;
+                }
+                node = child;
+                path.add(node);
+                matched += common;
+            }
+            node.terminals().add(entry);
+            for (Node onPath : path) {
+                onPath.top = offer(onPath.top, entry);
+            }
+        }
+
+        private void delete(String term, long id) {
+            List<Node> path = new ArrayList<>();
+            path.add(root);
+            Node node = root;
+            int matched = 0;
+            while (matched < term.length()) {
+                Node child = node.child(term.charAt(matched));
+                if (child == null || !term.startsWith(child.edge, matched)) {
+                    return;
+                }
+                node = child;
+                path.add(node);
+                matched += child.edge.length();
+            }
+            if (node.terminals == null || !node.terminals.removeIf(entry -> entry.user.id == id && entry.term.equals(term))) {
+                return;
+            }
+            // bottom-up, so every node is rebuilt from children that are already correct
+            for (int i = path.size() - 1; i >= 0; i--) {
+                Node onPath = path.get(i);
+                if (onPath.ranks(id)) {
+                    onPath.top = best(onPath);
+                }
+            }
+            prune(path);
+        }
+
+        // drops a node left without terms and folds a pass-through node into its only child
+        private void prune(List<Node> path) {
+            for (int i = path.size() - 1; i > 0; i--) {
+                Node node = path.get(i);
+                Node parent = path.get(i - 1);
+                boolean hasTerms = node.terminals != null && !node.terminals.isEmpty();
+                if (!hasTerms && node.children.length == 0) {
+                    parent.removeChild(node);
+                    nodes--;
+                } else if (!hasTerms && node.children.length == 1) {
+                    Node only = node.children[0];
+                    parent.replaceChild(node, only.withEdge(node.edge + only.edge));
+                    nodes--;
+                    return;
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private Entry[] offer(Entry[] top, Entry entry) {
+            for (int i = 0; i < top.length; i++) {
+                if (top[i].user.id == entry.user.id) {
+                    if (RANK.compare(top[i], entry) <= 0) {
+                        return top;
+                    }
+                    Entry[] replaced = top.clone();
+                    replaced[i] = entry;
+                    Arrays.sort(replaced, RANK);
+                    return replaced;
+                }
+            }
+            if (top.length == topK && RANK.compare(top[topK - 1], entry) <= 0) {
+                return top;
+            }
+            int insertAt = 0;
+            while (insertAt < top.length && RANK.compare(top[insertAt], entry) < 0) {
+                insertAt++;
+            }
+            Entry[] grown = new Entry[Math.min(top.length + 1, topK)];
+            System.arraycopy(top, 0, grown, 0, insertAt);
+            grown[insertAt] = entry;
+            System.arraycopy(top, insertAt, grown, insertAt + 1, grown.length - insertAt - 1);
+            return grown;
+        }
+
+        // the best top-k of a node always lies within its own terms and its children's top-k lists
+        private Entry[] best(Node node) {
+            Map<Long, Entry> bestPerUser = new LinkedHashMap<>();
+            List<Entry> candidates = new ArrayList<>();
+            if (node.terminals != null) {
+                candidates.addAll(node.terminals);
+            }
+            for (Node child : node.children) {
+                candidates.addAll(Arrays.asList(child.top));
+            }
+            for (Entry entry : candidates) {
+                bestPerUser.merge(entry.user.id, entry, (a, b) -> RANK.compare(a, b) <= 0 ? a : b);
+            }
+            return bestPerUser.values().stream().sorted(RANK).limit(topK).toArray(Entry[]::new);
+        }
+
+        private static int commonPrefix(String edge, String term, int from) {
+            int length = Math.min(edge.length(), term.length() - from);
+            int i = 0;
+            while (i < length && edge.charAt(i) == term.charAt(from + i)) {
+                i++;
+            }
+            return i;
+        }
+    }
+
+    private static final class Node {
+        private final String edge;
+        private volatile Node[] children = NO_CHILDREN;
+        private volatile Entry[] top = NO_ENTRIES;
+        // users whose term ends at this node; only read and written under the write lock
+        private List<Entry> terminals;
+
+        Node(String edge) {
+            this.edge = edge;
+        }
+
+        Node withEdge(String newEdge) {
+            Node copy = new Node(newEdge);
+            copy.children = children;
+            copy.top = top;
+            copy.terminals = terminals;
+            return copy;
+        }
+
+        List<Entry> terminals() {
+            if (terminals == null) {
+                terminals = new ArrayList<>(1);
+            }
+            return terminals;
+        }
+
+        boolean ranks(long id) {
+            for (Entry entry : top) {
+                if (entry.user.id == id) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // children are sorted by the first character of their edge, which is unique among siblings
+        Node child(char c) {
+            Node[] nodes = children;
+            int low = 0;
+            int high = nodes.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char first = nodes[mid].edge.charAt(0);
+                if (first < c) {
+                    low = mid + 1;
+                } else if (first > c) {
+                    high = mid - 1;
+                } else {
+                    return nodes[mid];
+                }
+            }
+            return null;
+        }
+
+        void addChild(Node child) {
+            Node[] nodes = children;
+            int insertAt = 0;
+            while (insertAt < nodes.length && nodes[insertAt].edge.charAt(0) < child.edge.charAt(0)) {
+                insertAt++;
+            }
+            Node[] grown = new Node[nodes.length + 1];
+            System.arraycopy(nodes, 0, grown, 0, insertAt);
+            grown[insertAt] = child;
+            System.arraycopy(nodes, insertAt, grown, insertAt + 1, nodes.length - insertAt);
+            children = grown;
+        }
+
+        void replaceChild(Node previous, Node replacement) {
+            Node[] copy = children.clone();
+            for (int i = 0; i < copy.length; i++) {
+                if (copy[i] == previous) {
+                    copy[i] = replacement;
+                }
+            }
+            children = copy;
+        }
+
+        void removeChild(Node child) {
+            children = Arrays.stream(children).filter(node -> node != child).toArray(Node[]::new);
+        }
+    }
+
+    private record Entry(String term, Suggestion user) {
+    }
+
+    private static final class Suggestion {
+        private final long id;
+        private final String firstName;
+        private final String lastName;
+        private final String email;
+        private final Long version;
+
+        private Suggestion(long id, String firstName, String lastName, String email, Long version) {
+            this.id = id;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+            this.version = version;
+        }
+
+        static Suggestion of(long id, String firstName, String lastName, String email, Long version) {
+            return new Suggestion(id, firstName, lastName, email, version);
+        }
+
+        // distinct, non-empty terms; a user whose first and last name are equal is indexed once
+        List<String> terms() {
+            List<String> terms = new ArrayList<>(3);
+            for (String term : new String[]{normalize(firstName), normalize(lastName), localPart(email)}) {
+                if (!term.isEmpty() && !terms.contains(term)) {
+                    terms.add(term);
+                }
+            }
+            return terms;
+        }
+
+        UserDto toDto() {
+            return UserDto.builder().id(id).firstName(firstName).lastName(lastName).email(email).version(version).build();
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.userapp.search;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.service.impl.UserShards;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * In-memory trigram inverted index over first name, last name and email. It answers the same
+ * "contains" question as {@link UserRepository#searchUsers(String)} (case-insensitively) without
+ * the leading-wildcard table scan: the rarest trigram of the query narrows the candidates and each
+ * candidate is then verified with a real substring check, so results are exact.
+ * <p>
+ * The index is built once the application is ready and kept in sync through committed
+ * {@link UserChangedEvent}s. Until the first build completes {@link #isReady()} is false and callers
+ * are expected to fall back to the database.
+ */
+@Component
+public class UserSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+    private static final int GRAM = 3;
+
+    private final UserRepository repository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final UserShards shards;
+    private final boolean enabled;
+
+    private final Object writeLock = new Object();
+    private volatile Segment current = new Segment();
+    private volatile boolean ready;
+    // changes committed while a rebuild is streaming rows; replayed on top of the fresh segment
+    private Map<Long, UserChangedEvent> pendingDuringRebuild;
+
+    public UserSearchIndex(UserRepository repository,
+                           PlatformTransactionManager transactionManager,
+                           UserShards shards,
+                           @Value("${app.search.index.enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.shards = shards;
+        this.enabled = enabled;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int size() {
+        return current.documents.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        if (enabled) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the database and atomically swaps it in. Reads keep being served from
+     * the previous segment while the rebuild runs.
+     */
+    public void rebuild() {
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            pendingDuringRebuild = new HashMap<>();
+        }
+        Segment fresh = new Segment();
+        try {
+            // from the primary: a lagging replica would miss rows committed just before the rebuild
+            DataSourceRouting.runOnPrimary(() -> shards.forEachShard(() -> readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<User> users = repository.streamAll()) {
+                    users.forEach(user -> fresh.put(Document.of(user.getId(), user.getFirstName(), user.getLastName(), user.getEmail(), user.getVersion())));
+                }
+            })));
+            synchronized (writeLock) {
+                pendingDuringRebuild.values().forEach(fresh::apply);
+                current = fresh;
+                ready = true;
+            }
+        } finally {
+            synchronized (writeLock) {
+                pendingDuringRebuild = null;
+            }
+        }
+        log.info("User search index built with {} documents and {} trigrams in {} ms",
+                fresh.documents.size(), fresh.postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Compares every row in the database with its indexed document.
+     */
+    public IndexVerification verify() {
+        Segment segment = current;
+        Set<Long> seen = new HashSet<>();
+        long[] counts = new long[3]; // rows, missing, stale
+        DataSourceRouting.runOnPrimary(() -> shards.forEachShard(() -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<User> users = repository.streamAll()) {
+                users.forEach(user -> {
+                    counts[0]++;
+                    seen.add(user.getId());
+                    Document document = segment.documents.get(user.getId());
+                    if (document == null) {
+                        counts[1]++;
+                    } else if (!document.sameAs(user)) {
+                        counts[2]++;
+                    }
+                });
+            }
+        })));
+        long orphaned = segment.documents.keySet().stream().filter(id -> !seen.contains(id)).count();
+        return new IndexVerification(segment.documents.size(), counts[0], counts[1], counts[2], orphaned);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        synchronized (writeLock) {
+            current.apply(event);
+            if (pendingDuringRebuild != null) {
+                pendingDuringRebuild.put(event.getId(), event);
+            }
+        }
+    }
+
+    /**
+     * Returns the users whose first name, last name or email contains the query, best matches first.
+     */
+    public List<UserDto> search(String query) {
+        List<Hit> hits = new ArrayList<>();
+        forEachMatch(query, (document, score) -> hits.add(new Hit(document, score)));
+        hits.sort(Comparator.comparingInt(Hit::score).reversed().thenComparingLong(hit -> hit.document.id));
+
+        List<UserDto> users = new ArrayList<>(hits.size());
+        for (Hit hit : hits) {
+            users.add(hit.document.toDto());
+        }
+        return users;
+    }
+
+    /**
+     * Returns how many users {@link #search(String)} would return, without building the results.
+     */
+    public int count(String query) {
+        int[] count = new int[1];
+        forEachMatch(query, (document, score) -> count[0]++);
+        return count[0];
+    }
+
+    private void forEachMatch(String query, ObjIntConsumer<Document> consumer) {
+        String needle = normalize(query);
+        Segment segment = current;
+        Collection<Long> candidates = needle.length() < GRAM
+                ? segment.documents.keySet()
+                : segment.candidates(needle);
+        for (Long id : candidates) {
+            Document document = segment.documents.get(id);
+            if (document == null) {
+                continue;
+            }
+            int score = document.score(needle);
+            if (score > 0) {
+                consumer.accept(document, score);
+            }
+        }
+    }
+
+    static String normalize(String value) {
+        return value == null ? "" : value.toLowerCase(Locale.ROOT);
+    }
+
+    static Set<String> trigrams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private record Hit(Document document, int score) {
+    }
+
+    private static final class Segment {
+        private final Map<Long, Document> documents = new ConcurrentHashMap<>();
+        private final Map<String, Set<Long>> postings = new ConcurrentHashMap<>();
+
+        void apply(UserChangedEvent event) {
+            if (event.getType() == UserChangedEvent.Type.DELETED) {
+                remove(event.getId());
+            } else {
+                put(Document.of(event.getId(), event.getFirstName(), event.getLastName(), event.getEmail(), event.getVersion()));
+            }
+        }
+
+        void put(Document document) {
+            remove(document.id);
+            for (String gram : document.trigrams()) {
+                postings.computeIfAbsent(gram, key -> ConcurrentHashMap.newKeySet()).add(document.id);
+            }
+            documents.put(document.id, document);
+        }
+
+        void remove(long id) {
+            Document previous = documents.remove(id);
+            if (previous == null) {
+                return;
+            }
+            for (String gram : previous.trigrams()) {
+                postings.computeIfPresent(gram, (key, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+
+        // the rarest trigram bounds the candidate set; Document.score does the exact check
+        Collection<Long> candidates(String needle) {
+            Set<Long> smallest = null;
+            for (String gram : trigrams(needle)) {
+                Set<Long> ids = postings.get(gram);
+                if (ids == null) {
+                    return Set.of();
+                }
+                if (smallest == null || ids.size() < smallest.size()) {
+                    smallest = ids;
+                }
+            }
+            return smallest == null ? Set.of() : new ArrayList<>(smallest);
+        }
+    }
+
+    private static final class Document {
+        private final long id;
+        private final String firstName;
+        private final String lastName;
+        private final String email;
+        private final Long version;
+        private final String[] fields;
+
+        private Document(long id, String firstName, String lastName, String email, Long version) {
+            this.id = id;
+            this.firstName = firstName;
+            this.lastName = lastName;
+            this.email = email;
+            this.version = version;
+            this.fields = new String[]{normalize(firstName), normalize(lastName), normalize(email)};
+        }
+
+        static Document of(long id, String firstName, String lastName, String email, Long version) {
+            return new Document(id, firstName, lastName, email, version);
+        }
+
+        Set<String> trigrams() {
+            Set<String> grams = new HashSet<>();
+            for (String field : fields) {
+                grams.addAll(UserSearchIndex.trigrams(field));
+            }
+            return grams;
+        }
+
+        // exact field match > prefix match > infix match, summed over the three fields
+        int score(String needle) {
+            int score = 0;
+            for (String field : fields) {
+                if (field.equals(needle)) {
+                    score += 4;
+                } else if (field.startsWith(needle)) {
+                    score += 2;
+                } else if (field.contains(needle)) {
+                    score += 1;
+                }
+            }
+            return score;
+        }
+
+        boolean sameAs(User user) {
+            return Objects.equals(firstName, user.getFirstName())
+                    && Objects.equals(lastName, user.getLastName())
+                    && Objects.equals(email, user.getEmail())
+                    && Objects.equals(version, user.getVersion());
+        }
+
+        UserDto toDto() {
+            return UserDto.builder().id(id).firstName(firstName).lastName(lastName).email(email).version(version).build();
+        }
+    }
+}
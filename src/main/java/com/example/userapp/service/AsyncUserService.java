@@ -0,0 +1,25 @@
+package com.example.userapp.service;
+
+import com.example.userapp.payload.UserDto;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking variants of {@link UserService}. Each call is queued on a bounded executor sized to
+ * the connection pool and completes when the underlying blocking call returns.
+ */
+public interface AsyncUserService {
+
+    CompletableFuture<UserDto> saveUser(UserDto userDto);
+    CompletableFuture<UserDto> getUserById(long id);
+    CompletableFuture<Long> getCurrentVersion(long id);
+    CompletableFuture<List<UserDto>> getAllUsers();
+    CompletableFuture<Page<UserDto>> getUserWithPagination(int page, int size);
+    CompletableFuture<UserDto> updateUser(UserDto userDto, long id);
+    CompletableFuture<Void> deleteUserById(long id);
+    CompletableFuture<List<UserDto>> searchUser(String query);
+    CompletableFuture<Page<UserDto>> searchWithPagination(String query, Pageable pageable);
+}
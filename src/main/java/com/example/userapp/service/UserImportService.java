@@ -0,0 +1,15 @@
+package com.example.userapp.service;
+
+import com.example.userapp.payload.ImportSummary;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+public interface UserImportService {
+
+    /**
+     * Reads {@code firstName,lastName,email} rows from a UTF-8 CSV stream and stores the valid ones.
+     * The stream is consumed incrementally; the caller closes it.
+     */
+    ImportSummary importCsv(InputStream csv) throws IOException;
+}
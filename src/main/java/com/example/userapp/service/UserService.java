@@ -1,20 +1,32 @@
 package com.example.userapp.service;
 
-import com.example.userapp.entity.User;
+import com.example.userapp.payload.BatchCreateResponse;
+import com.example.userapp.payload.ScrollResponse;
 import com.example.userapp.payload.UserDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserService {
 
     UserDto saveUser(UserDto userDto);
+    BatchCreateResponse saveUsers(List<UserDto> userDtos);
     UserDto getUserById(long id);
+    long getCurrentVersion(long id);
+    UserDto getUserByEmail(String email);
     List<UserDto> getAllUsers();
-    Page<User> getUserWithPagination(int page, int size);
+    void streamAllUsers(Consumer<UserDto> consumer);
+    Page<UserDto> getUserWithPagination(int page, int size);
+    ScrollResponse<UserDto> scrollUsers(String after, int size);
     UserDto updateUser(UserDto userDto, long id);
     void deleteUserById(long id);
-    List<User> searchUser(String query);
-    Page<User> searchWithPagination(String query, Pageable pageable);
+    List<UserDto> searchUser(String query);
+    Page<UserDto> searchWithPagination(String query, Pageable pageable);
+    Slice<UserDto> searchSlice(String query, Pageable pageable);
+    Page<UserDto> searchWithApproximateCount(String query, Pageable pageable);
+    ScrollResponse<UserDto> scrollSearch(String query, String after, int size);
+    List<UserDto> autocomplete(String prefix, int limit);
 }
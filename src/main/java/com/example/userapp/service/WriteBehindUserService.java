@@ -0,0 +1,28 @@
+package com.example.userapp.service;
+
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.payload.WriteBehindStatus;
+
+/**
+ * Accepts user creates without waiting for the insert. Each accepted user gets its final id up
+ * front and is stored by a background flusher shortly after, in batches.
+ */
+public interface WriteBehindUserService {
+
+    /**
+     * Queues the user for insertion and returns it with its id assigned. Until the next flush the
+     * user cannot be read back. An email already stored or already queued is rejected here.
+     */
+    UserDto enqueueUser(UserDto userDto);
+
+    /**
+     * Returns how the user accepted under this id fared: pending until its flush, then stored, or
+     * failed with the reason. Failures are remembered for {@code failure-retention}.
+     *
+     * @throws com.example.userapp.exception.ResourceNotFoundException for ids that were never
+     *         accepted, or whose failure has been forgotten
+     */
+    WriteBehindStatus getStatus(long id);
+
+    int getQueueSize();
+}
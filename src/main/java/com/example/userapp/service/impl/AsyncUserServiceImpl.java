@@ -0,0 +1,166 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.datasource.ShardContext;
+import com.example.userapp.exception.ServiceBusyException;
+import com.example.userapp.metrics.SqlStatementCounter;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.AsyncUserService;
+import com.example.userapp.service.UserService;
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs {@link UserService} calls off the servlet thread. The executor has exactly as many threads
+ * as the primary connection pool has connections, so the pool stays the real concurrency limit, and a
+ * bounded queue in front of it; when the queue is full callers get 503 instead of waiting. The size is
+ * read from the live pool before every call, so it follows resizes by {@code PoolSizeAdvisor}.
+ * <p>
+ * Calls carry the caller's thread-bound context to the worker ({@link #CONTEXT}): read-your-writes
+ * pinning to the primary, the selected shard and the request's SQL statement counter.
+ * <p>
+ * The executor is private to this bean (not an {@code Executor} bean) so Spring MVC keeps its own
+ * task executor for streaming responses. On JDK 21 the same contract can be met by submitting to a
+ * virtual-thread-per-task executor guarded by a semaphore of the pool size.
+ */
+@Service
+@ConditionalOnProperty(name = "app.async.enabled", havingValue = "true")
+public class AsyncUserServiceImpl implements AsyncUserService, DisposableBean {
+
+    static final TaskDecorator CONTEXT =
+            task -> DataSourceRouting.wrap(ShardContext.wrap(SqlStatementCounter.wrap(task)));
+
+    private final UserService userService;
+    // null when the pool is not a HikariDataSource bean; the executor then keeps its configured size
+    private final HikariConfigMXBean poolConfig;
+    private final ThreadPoolExecutor executor;
+
+    public AsyncUserServiceImpl(UserService userService, MeterRegistry registry, ObjectProvider<HikariDataSource> pool,
+                                @Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                @Value("${app.async.queue-capacity:200}") int queueCapacity) {
+        this.userService = userService;
+        HikariDataSource primary = pool.getIfUnique();
+        this.poolConfig = primary == null ? null : primary.getHikariConfigMXBean();
+        int threads = poolConfig == null ? poolSize : poolConfig.getMaximumPoolSize();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "user-service-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        new ExecutorServiceMetrics(executor, "userService", Tags.empty()).bindTo(registry);
+    }
+
+    @Override
+    public CompletableFuture<UserDto> saveUser(UserDto userDto) {
+        return submit(() -> userService.saveUser(userDto));
+    }
+
+    @Override
+    public CompletableFuture<UserDto> getUserById(long id) {
+        return submit(() -> userService.getUserById(id));
+    }
+
+    @Override
+    public CompletableFuture<Long> getCurrentVersion(long id) {
+        return submit(() -> userService.getCurrentVersion(id));
+    }
+
+    @Override
+    public CompletableFuture<List<UserDto>> getAllUsers() {
+        return submit(userService::getAllUsers);
+    }
+
+    @Override
+    public CompletableFuture<Page<UserDto>> getUserWithPagination(int page, int size) {
+        return submit(() -> userService.getUserWithPagination(page, size));
+    }
+
+    @Override
+    public CompletableFuture<UserDto> updateUser(UserDto userDto, long id) {
+        return submit(() -> userService.updateUser(userDto, id));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteUserById(long id) {
+        return submit(() -> {
+            userService.deleteUserById(id);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<UserDto>> searchUser(String query) {
+        return submit(() -> userService.searchUser(query));
+    }
+
+    @Override
+    public CompletableFuture<Page<UserDto>> searchWithPagination(String query, Pageable pageable) {
+        return submit(() -> userService.searchWithPagination(query, pageable));
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns the number of worker threads, the pool's maximum size as of the last call.
+     */
+    int getThreadCount() {
+        return executor.getMaximumPoolSize();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        followPoolSize();
+        try {
+            return CompletableFuture.supplyAsync(call, task -> executor.execute(CONTEXT.decorate(task)));
+        } catch (RejectedExecutionException e) {
+            throw new ServiceBusyException("User service is at capacity, retry later");
+        }
+    }
+
+    private void followPoolSize() {
+        if (poolConfig == null) {
+            return;
+        }
+        int size = poolConfig.getMaximumPoolSize();
+        if (size == executor.getMaximumPoolSize()) {
+            return;
+        }
+        synchronized (executor) {
+            // the core size may never exceed the maximum, so move the bound on the growing side first
+            if (size > executor.getMaximumPoolSize()) {
+                executor.setMaximumPoolSize(size);
+                executor.setCorePoolSize(size);
+            } else if (size < executor.getMaximumPoolSize()) {
+                executor.setCorePoolSize(size);
+                executor.setMaximumPoolSize(size);
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.userapp.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 field splitting for one physical line: commas separate fields, double quotes
+ * wrap fields that contain commas, and a doubled quote inside a quoted field is a literal quote.
+ * Quoted line breaks are not supported; such a row fails with a field-count or syntax error.
+ */
+final class CsvRecords {
+
+    private CsvRecords() {
+    }
+
+    /**
+     * @return the fields of the line, or null when a quoted field is not closed
+     */
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>(4);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.entity.User;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.EmailBloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Inserts users in fixed-size chunks, one transaction per chunk. Within a chunk Hibernate sends the
+ * inserts as JDBC batches ({@code hibernate.jdbc.batch_size}); the persistence context is cleared
+ * after every chunk so memory does not grow with the input.
+ * <p>
+ * Before a chunk is sent each email is checked against the ones already seen in this call and
+ * against {@link EmailBloomFilter}, so a duplicate is rejected on its own row instead of failing the
+ * whole batch and sending the chunk again row by row.
+ */
+@Component
+public class UserBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(UserBatchWriter.class);
+
+    private final UserRepository repository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final UserShards shards;
+    private final EmailBloomFilter emailFilter;
+    private final int chunkSize;
+
+    public UserBatchWriter(UserRepository repository, EntityManager entityManager,
+                           PlatformTransactionManager transactionManager, UserShards shards,
+                           EmailBloomFilter emailFilter,
+                           @Value("${app.users.batch.chunk-size:500}") int chunkSize) {
+        this.repository = repository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.shards = shards;
+        this.emailFilter = emailFilter;
+        this.chunkSize = chunkSize;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Persists the users and returns, for each of them, {@code null} when it was stored (its id is
+     * then set) or the reason it was not. A chunk that fails as a whole is retried row by row so one
+     * bad row only rejects itself.
+     */
+    public List<String> write(List<User> users) {
+        List<String> failures = new ArrayList<>(users.size());
+        Set<String> seenEmails = new HashSet<>();
+        for (int from = 0; from < users.size(); from += chunkSize) {
+            List<User> chunk = users.subList(from, Math.min(from + chunkSize, users.size()));
+            List<String> chunkFailures = new ArrayList<>(chunk.size());
+            List<User> fresh = new ArrayList<>(chunk.size());
+            for (User user : chunk) {
+                String duplicate = duplicateEmail(user, seenEmails);
+                chunkFailures.add(duplicate);
+                if (duplicate == null) {
+                    fresh.add(user);
+                }
+            }
+            if (!fresh.isEmpty()) {
+                try {
+                    insert(fresh);
+                } catch (RuntimeException e) {
+                    log.warn("Batch insert of {} users failed, retrying row by row: {}", fresh.size(), e.getMessage());
+                    for (int i = 0; i < chunk.size(); i++) {
+                        if (chunkFailures.get(i) == null) {
+                            chunkFailures.set(i, insertOne(chunk.get(i)));
+                        }
+                    }
+                }
+            }
+            failures.addAll(chunkFailures);
+        }
+        return failures;
+    }
+
+    // the reason the user's email cannot be stored, or null; a possible hit in the filter is confirmed on the primary
+    private String duplicateEmail(User user, Set<String> seenEmails) {
+        String email = User.normalizeEmail(user.getEmail());
+        if (email == null) {
+            return null;
+        }
+        if (!seenEmails.add(email) || emailFilter.isTaken(email, this::emailExists)) {
+            return String.format("a user with email %s already exists", email);
+        }
+        return null;
+    }
+
+    private String insertOne(User user) {
+        try {
+            insert(List.of(user));
+            return null;
+        } catch (RuntimeException e) {
+            user.setId(null);
+            user.setVersion(null);
+            return NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        }
+    }
+
+    private boolean emailExists(String email) {
+        if (shards.isSharded()) {
+            return shards.emailOwner(email) != null;
+        }
+        return DataSourceRouting.onPrimary(() -> repository.existsByEmail(email));
+    }
+
+    private void insert(List<User> chunk) {
+        // ids and versions set by a failed attempt were never stored; start the retry from a new entity state
+        chunk.forEach(user -> {
+            user.setId(null);
+            user.setVersion(null);
+        });
+        // when sharded, the whole chunk goes to one shard so it still commits as one batch
+        shards.insert(chunk, () -> transactionTemplate.execute(status -> {
+            repository.saveAll(chunk);
+            entityManager.flush();
+            entityManager.clear();
+            return null;
+        }));
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.entity.User;
+import org.hibernate.StatelessSession;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Hands out user ids ahead of the insert. Ids come from the same pooled {@code users_seq}
+ * generator JPA inserts use, so they never collide: the generator reserves a block of ids per
+ * sequence call and serves the rest of the block from memory.
+ */
+@Component
+public class UserIdAllocator {
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final IdentifierGenerator generator;
+
+    public UserIdAllocator(EntityManagerFactory entityManagerFactory) {
+        this.sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        this.generator = sessionFactory.getMetamodel().entityPersister(User.class).getIdentifierGenerator();
+    }
+
+    public long next() {
+        // a stateless session only takes a connection when the block is used up and the sequence is called
+        try (StatelessSession session = sessionFactory.openStatelessSession()) {
+            return ((Number) generator.generate((SharedSessionContractImplementor) session, null)).longValue();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.mapper.UserMapper;
+import com.example.userapp.payload.ImportRejection;
+import com.example.userapp.payload.ImportSummary;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.UserImportService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streams a CSV upload through an NIO channel reader and hands valid rows to {@link UserBatchWriter}
+ * one chunk at a time, so only one chunk of users (plus a capped list of rejections) is ever held
+ * in memory and every chunk commits in its own transaction. Lines longer than
+ * {@code max-line-length} are rejected without being held whole.
+ * <p>
+ * The first line is treated as a header when it names the columns ({@code firstName},
+ * {@code lastName}, {@code email}, in any order and case, underscores allowed); otherwise rows are
+ * read in that column order.
+ */
+@Service
+public class UserImportServiceImpl implements UserImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserImportServiceImpl.class);
+    private static final String[] COLUMNS = {"firstname", "lastname", "email"};
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final UserBatchWriter batchWriter;
+    private final UserMapper userMapper;
+    private final Validator validator;
+    private final int maxReportedRejections;
+    private final int maxLineLength;
+
+    public UserImportServiceImpl(UserBatchWriter batchWriter, UserMapper userMapper, Validator validator,
+                                 @Value("${app.users.import.max-reported-rejections:100}") int maxReportedRejections,
+                                 @Value("${app.users.import.max-line-length:4096}") int maxLineLength) {
+        this.batchWriter = batchWriter;
+        this.userMapper = userMapper;
+        this.validator = validator;
+        this.maxReportedRejections = maxReportedRejections;
+        this.maxLineLength = maxLineLength;
+    }
+
+    @Override
+    public ImportSummary importCsv(InputStream csv) throws IOException {
+        long start = System.nanoTime();
+        Progress progress = new Progress();
+        LineReader reader = new LineReader(Channels.newReader(Channels.newChannel(csv),
+                StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE),
+                READ_BUFFER), maxLineLength);
+
+        int[] columns = {0, 1, 2};
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (reader.truncated) {
+                progress.rows++;
+                progress.reject(lineNumber, List.of("line is longer than " + maxLineLength + " characters"), maxReportedRejections);
+                continue;
+            }
+            if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                line = line.substring(1);
+            }
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> fields = CsvRecords.split(line);
+            if (lineNumber == 1 && fields != null) {
+                int[] header = headerColumns(fields);
+                if (header != null) {
+                    columns = header;
+                    continue;
+                }
+            }
+            progress.rows++;
+            readRow(lineNumber, fields, columns, progress);
+            if (progress.pending.size() >= batchWriter.getChunkSize()) {
+                flush(progress);
+            }
+        }
+        flush(progress);
+
+        log.info("Imported {} of {} CSV rows in {} ms", progress.accepted, progress.rows, (System.nanoTime() - start) / 1_000_000);
+        return new ImportSummary(progress.rows, progress.accepted, progress.rows - progress.accepted, progress.rejections);
+    }
+
+    private void readRow(long lineNumber, List<String> fields, int[] columns, Progress progress) {
+        if (fields == null) {
+            progress.reject(lineNumber, List.of("unterminated quoted field"), maxReportedRejections);
+            return;
+        }
+        if (fields.size() != COLUMNS.length) {
+            progress.reject(lineNumber, List.of("expected " + COLUMNS.length + " fields but found " + fields.size()), maxReportedRejections);
+            return;
+        }
+        UserDto userDto = UserDto.builder()
+                .firstName(fields.get(columns[0]))
+                .lastName(fields.get(columns[1]))
+                .email(User.normalizeEmail(fields.get(columns[2])))
+                .build();
+        Set<ConstraintViolation<UserDto>> violations = validator.validate(userDto);
+        if (!violations.isEmpty()) {
+            progress.reject(lineNumber, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.toList()), maxReportedRejections);
+            return;
+        }
+        progress.pending.add(userMapper.toEntity(userDto));
+        progress.pendingLines.add(lineNumber);
+    }
+
+    private void flush(Progress progress) {
+        if (progress.pending.isEmpty()) {
+            return;
+        }
+        List<String> failures = batchWriter.write(progress.pending);
+        for (int i = 0; i < failures.size(); i++) {
+            if (failures.get(i) == null) {
+                progress.accepted++;
+            } else {
+                progress.reject(progress.pendingLines.get(i), List.of(failures.get(i)), maxReportedRejections);
+            }
+        }
+        progress.pending.clear();
+        progress.pendingLines.clear();
+    }
+
+    // maps header names to positions, or null when the line is not a header
+    private static int[] headerColumns(List<String> fields) {
+        if (fields.size() != COLUMNS.length) {
+            return null;
+        }
+        int[] columns = new int[COLUMNS.length];
+        for (int column = 0; column < COLUMNS.length; column++) {
+            columns[column] = -1;
+            for (int i = 0; i < fields.size(); i++) {
+                if (COLUMNS[column].equals(fields.get(i).replace("_", "").toLowerCase(Locale.ROOT))) {
+                    columns[column] = i;
+                }
+            }
+            if (columns[column] < 0) {
+                return null;
+            }
+        }
+        return columns;
+    }
+
+    /**
+     * Splits lines like {@link java.io.BufferedReader#readLine()}, but keeps at most {@code maxLength}
+     * characters of a line and drops the rest up to the line break, flagging it as truncated.
+     */
+    private static final class LineReader {
+        private final Reader in;
+        private final char[] buffer = new char[READ_BUFFER];
+        private final StringBuilder line = new StringBuilder();
+        private final int maxLength;
+        private int position;
+        private int limit;
+        private boolean skipLf;
+        private boolean truncated;
+
+        LineReader(Reader in, int maxLength) {
+            this.in = in;
+            this.maxLength = maxLength;
+        }
+
+        // null at the end of input
+        String readLine() throws IOException {
+            line.setLength(0);
+            truncated = false;
+            boolean empty = true;
+            while (true) {
+                if (position == limit) {
+                    position = 0;
+                    limit = Math.max(in.read(buffer), 0);
+                    if (limit == 0) {
+                        return empty ? null : line.toString();
+                    }
+                }
+                char c = buffer[position++];
+                if (skipLf) {
+                    skipLf = false;
+                    if (c == '\n') {
+                        continue;
+                    }
+                }
+                if (c == '\n' || c == '\r') {
+                    skipLf = c == '\r';
+                    return line.toString();
+                }
+                empty = false;
+                if (line.length() < maxLength) {
+                    line.append(c);
+                } else {
+                    truncated = true;
+                }
+            }
+        }
+    }
+
+    private static final class Progress {
+        private final List<User> pending = new ArrayList<>();
+        private final List<Long> pendingLines = new ArrayList<>();
+        private final List<ImportRejection> rejections = new ArrayList<>();
+        private long rows;
+        private long accepted;
+
+        void reject(long line, List<String> errors, int maxReported) {
+            if (rejections.size() < maxReported) {
+                rejections.add(new ImportRejection(line, errors));
+            }
+        }
+    }
+}
@@ -1,45 +1,205 @@
 package com.example.userapp.service.impl;
 
+import com.example.userapp.cache.ReadCoalescer;
+import com.example.userapp.cache.UserCache;
+import com.example.userapp.datasource.DataSourceRouting;
 import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.exception.BadRequestException;
+import com.example.userapp.exception.ConcurrentUpdateException;
+import com.example.userapp.exception.DuplicateEmailException;
+import com.example.userapp.exception.PreconditionRequiredException;
 import com.example.userapp.exception.ResourceNotFoundException;
+import com.example.userapp.mapper.UserMapper;
+import com.example.userapp.payload.BatchCreateResponse;
+import com.example.userapp.payload.BatchItemResult;
+import com.example.userapp.payload.ScrollResponse;
 import com.example.userapp.payload.UserDto;
 import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.EmailBloomFilter;
+import com.example.userapp.search.SearchCountEstimator;
+import com.example.userapp.search.UserAutocompleteIndex;
+import com.example.userapp.search.UserSearchIndex;
 import com.example.userapp.service.UserService;
-import org.modelmapper.ModelMapper;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class UserServiceImpl implements UserService {
 
+    private static final int MAX_SCROLL_SIZE = 1000;
+    private static final Comparator<UserDto> BY_ID = Comparator.comparing(UserDto::getId);
+
     private UserRepository repository;
-    private ModelMapper modelMapper;
+    private UserMapper userMapper;
+    private EntityManager entityManager;
+    private UserSearchIndex searchIndex;
+    private UserBatchWriter batchWriter;
+    private Validator validator;
+    private UserCache userCache;
+    private ApplicationEventPublisher eventPublisher;
+    private SearchCountEstimator countEstimator;
+    private EmailBloomFilter emailFilter;
+    private ReadCoalescer readCoalescer;
+    private UserAutocompleteIndex autocompleteIndex;
+    private UserShards shards;
 
-    public UserServiceImpl(UserRepository repository, ModelMapper modelMapper) {
+    public UserServiceImpl(UserRepository repository, UserMapper userMapper, EntityManager entityManager,
+                           UserSearchIndex searchIndex, UserBatchWriter batchWriter, Validator validator,
+                           UserCache userCache, ApplicationEventPublisher eventPublisher,
+                           SearchCountEstimator countEstimator, EmailBloomFilter emailFilter,
+                           ReadCoalescer readCoalescer, UserAutocompleteIndex autocompleteIndex,
+                           UserShards shards) {
         this.repository = repository;
-        this.modelMapper = modelMapper;
+        this.userMapper = userMapper;
+        this.entityManager = entityManager;
+        this.searchIndex = searchIndex;
+        this.batchWriter = batchWriter;
+        this.validator = validator;
+        this.userCache = userCache;
+        this.eventPublisher = eventPublisher;
+        this.countEstimator = countEstimator;
+        this.emailFilter = emailFilter;
+        this.readCoalescer = readCoalescer;
+        this.autocompleteIndex = autocompleteIndex;
+        this.shards = shards;
     }
 
     @Override
     public UserDto saveUser(UserDto userDto) {
         User user = mapToEntity(userDto);
-        User returnUser =  repository.save(user);
-        return mapToDto(returnUser);
+        String email = User.normalizeEmail(user.getEmail());
+        if (emailFilter.isTaken(email, this::emailExists)) {
+            throw new DuplicateEmailException(email);
+        }
+        try {
+            User returnUser = shards.insert(List.of(user), () -> repository.save(user));
+            return mapToDto(returnUser);
+        } catch (DataIntegrityViolationException e) {
+            // lost a race with a concurrent create of the same email; the unique index caught it
+            if (emailExists(email)) {
+                throw new DuplicateEmailException(email);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public BatchCreateResponse saveUsers(List<UserDto> userDtos) {
+        List<BatchItemResult> results = new ArrayList<>(userDtos.size());
+        List<BatchItemResult> accepted = new ArrayList<>();
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < userDtos.size(); i++) {
+            UserDto userDto = userDtos.get(i);
+            List<String> errors = validate(userDto);
+            BatchItemResult result = BatchItemResult.builder().index(i).user(userDto).build();
+            if (errors.isEmpty()) {
+                accepted.add(result);
+                users.add(mapToEntity(userDto));
+            } else {
+                result.setStatus(BatchItemResult.Status.REJECTED);
+                result.setErrors(errors);
+            }
+            results.add(result);
+        }
+
+        List<String> failures = batchWriter.write(users);
+        for (int i = 0; i < accepted.size(); i++) {
+            BatchItemResult result = accepted.get(i);
+            if (failures.get(i) == null) {
+                result.setStatus(BatchItemResult.Status.CREATED);
+                result.setUser(mapToDto(users.get(i)));
+            } else {
+                result.setStatus(BatchItemResult.Status.REJECTED);
+                result.setErrors(List.of(failures.get(i)));
+            }
+        }
+
+        int created = (int) results.stream().filter(result -> result.getStatus() == BatchItemResult.Status.CREATED).count();
+        return new BatchCreateResponse(results.size(), created, results.size() - created, results);
+    }
+
+    // duplicate checks read the primary: a replica that has not caught up would miss a user just created;
+    // each shard only has a unique index of its own emails, so when sharded the check reads the claims of all of them
+    private boolean emailExists(String email) {
+        if (shards.isSharded()) {
+            return shards.emailOwner(email) != null;
+        }
+        return DataSourceRouting.onPrimary(() -> repository.existsByEmail(email));
+    }
+
+    private boolean emailExistsForOtherUser(String email, long id) {
+        if (shards.isSharded()) {
+            Long owner = shards.emailOwner(email);
+            return owner != null && owner != id;
+        }
+        return DataSourceRouting.onPrimary(() -> repository.existsByEmailAndIdNot(email, id));
+    }
+
+    private List<String> validate(UserDto userDto) {
+        if (userDto == null) {
+            return List.of("user must not be null");
+        }
+        Set<ConstraintViolation<UserDto>> violations = validator.validate(userDto);
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.toList());
     }
 
     @Override
     public UserDto getUserById(long id) {
-        User user = repository.findById(id).orElseThrow(()-> new ResourceNotFoundException("user", id));
-        return mapToDto(user);
+        // the cache already lets concurrent misses for one id share a single load; loads read the primary
+        // so the cache never keeps a row a replica has not caught up on
+        return userCache.get(id, key -> {
+            User user = DataSourceRouting.onPrimary(() -> shards.onShardOf(key, () -> repository.findById(key)))
+                    .orElseThrow(()-> new ResourceNotFoundException("user", key));
+            return mapToDto(user);
+        });
     }
 
     @Override
+    public long getCurrentVersion(long id) {
+        // past the cache, which may hold a version another instance has since moved on from
+        return DataSourceRouting.onPrimary(() -> shards.onShardOf(id, () -> repository.findVersionById(id)))
+                .orElseThrow(()-> new ResourceNotFoundException("user", id));
+    }
+
+    @Override
+    public UserDto getUserByEmail(String email) {
+        String normalized = User.normalizeEmail(email);
+        return readCoalescer.execute("getUserByEmail", () -> {
+            User user = shards.scatter(() -> repository.findByEmail(normalized)).stream()
+                    .flatMap(Optional::stream)
+                    .findFirst()
+                    .orElseThrow(()-> new ResourceNotFoundException("user", "email", normalized));
+            return mapToDto(user);
+        }, normalized);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
     public List<UserDto> getAllUsers() {
-        List<User> users = repository.findAll();
+        List<User> users = shards.gather(repository::findAll, Comparator.comparing(User::getId), Integer.MAX_VALUE);
         List<UserDto> returnUsers = new ArrayList<>();
         for(User user: users){
             returnUsers.add(mapToDto(user));
@@ -48,41 +208,178 @@ public class UserServiceImpl implements UserService {
     }
 
     @Override
-    public Page<User> getUserWithPagination(int page, int size) {
-        return repository.findAll(PageRequest.of(page,size));
+    @Transactional(readOnly = true)
+    public void streamAllUsers(Consumer<UserDto> consumer) {
+        // shard by shard, so only one cursor is open at a time
+        shards.forEachShard(() -> {
+            try (Stream<User> users = repository.streamAll()) {
+                users.forEach(user -> {
+                    consumer.accept(mapToDto(user));
+                    // keep the persistence context empty so memory stays flat for any table size
+                    entityManager.detach(user);
+                });
+            }
+        });
+    }
+
+    // Read-only transactions run the Hibernate session with FlushMode.MANUAL, so no flush or
+    // dirty-check happens on commit; the projections below never load managed entities anyway.
+    // Coalesced reads get theirs from the ReadCoalescer, opened only by the call that runs the query.
+    @Override
+    public Page<UserDto> getUserWithPagination(int page, int size) {
+        PageRequest pageRequest = PageRequest.of(page, size);
+        return readCoalescer.execute("getUserWithPagination",
+                () -> shards.page(repository::findAllProjected, pageRequest, BY_ID), pageRequest);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ScrollResponse<UserDto> scrollUsers(String after, int size) {
+        int limit = scrollSize(size);
+        long cursor = KeysetCursor.decode(after);
+        List<UserDto> users = shards.gather(() -> repository.findProjectedAfter(cursor, PageRequest.of(0, limit + 1)), BY_ID, limit + 1);
+        return toScrollResponse(users, limit);
     }
 
     @Override
     public UserDto updateUser(UserDto userDto, long id) {
-        User user = repository.findById(id).orElseThrow(()-> new ResourceNotFoundException("user", id));
-        user.setFirstName(userDto.getFirstName());
-        user.setLastName(userDto.getLastName());
-        user.setEmail(userDto.getEmail());
-        User returnUser = repository.save(user);
-        return mapToDto(returnUser);
+        Long expectedVersion = userDto.getVersion();
+        if (expectedVersion == null) {
+            // an update without the version it was based on could silently overwrite someone else's
+            throw new PreconditionRequiredException("Updating user " + id + " requires the version it is based on");
+        }
+        // the bulk update skips @PreUpdate, so normalize here
+        String email = User.normalizeEmail(userDto.getEmail());
+        if (email != null && emailFilter.isTaken(email, taken -> emailExistsForOtherUser(taken, id))) {
+            throw new DuplicateEmailException(email);
+        }
+        int updated;
+        try {
+            updated = shards.updateEmail(id, email, () ->
+                    repository.updateByIdAndVersion(id, expectedVersion, userDto.getFirstName(), userDto.getLastName(), email));
+        } catch (DataIntegrityViolationException e) {
+            if (emailExistsForOtherUser(email, id)) {
+                throw new DuplicateEmailException(email);
+            }
+            throw e;
+        }
+        if (updated == 0) {
+            if (shards.onShardOf(id, () -> repository.existsById(id))) {
+                throw new ConcurrentUpdateException("user", id, expectedVersion);
+            }
+            throw new ResourceNotFoundException("user", id);
+        }
+        // bulk statements bypass the entity listener, so announce the change here
+        eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.SAVED, id,
+                userDto.getFirstName(), userDto.getLastName(), email, expectedVersion + 1));
+        return UserDto.builder()
+                .id(id)
+                .firstName(userDto.getFirstName())
+                .lastName(userDto.getLastName())
+                .email(email)
+                .version(expectedVersion + 1)
+                .build();
     }
 
     @Override
     public void deleteUserById(long id) {
-        User user = repository.findById(id).orElseThrow(()-> new ResourceNotFoundException("user", id));
-        repository.delete(user);
+        if (shards.delete(id, () -> repository.removeById(id)) == 0) {
+            throw new ResourceNotFoundException("user", id);
+        }
+        eventPublisher.publishEvent(UserChangedEvent.deleted(id));
+    }
+
+    @Override
+    public List<UserDto> searchUser(String query) {
+        if (searchIndex.isReady()) {
+            return searchIndex.search(query);
+        }
+        return readCoalescer.execute("searchUser",
+                () -> shards.gather(() -> repository.searchProjected(query), BY_ID, Integer.MAX_VALUE), query);
+    }
+
+    @Override
+    public Page<UserDto> searchWithPagination(String query, Pageable pageable) {
+        return readCoalescer.execute("searchWithPagination",
+                () -> shards.page(page -> repository.searchProjected(query, page), pageable, BY_ID), query, pageable);
+    }
+
+    @Override
+    public Slice<UserDto> searchSlice(String query, Pageable pageable) {
+        return readCoalescer.execute("searchSlice",
+                () -> shards.slice(page -> repository.searchProjectedSlice(query, page), pageable, BY_ID), query, pageable);
+    }
+
+    @Override
+    public Page<UserDto> searchWithApproximateCount(String query, Pageable pageable) {
+        return readCoalescer.execute("searchWithApproximateCount", () -> approximatePage(query, pageable), query, pageable);
+    }
+
+    private Page<UserDto> approximatePage(String query, Pageable pageable) {
+        Slice<UserDto> slice = shards.slice(page -> repository.searchProjectedSlice(query, page), pageable, BY_ID);
+        long offset = pageable.getOffset();
+        int fetched = slice.getNumberOfElements();
+        long total;
+        if (slice.hasNext()) {
+            // never report fewer rows than the slice itself proves exist
+            total = Math.max(countEstimator.estimate(query), offset + fetched + 1);
+        } else if (fetched > 0 || offset == 0) {
+            // last page: the total is known exactly
+            total = offset + fetched;
+        } else {
+            total = Math.min(countEstimator.estimate(query), offset);
+        }
+        return new PageImpl<>(slice.getContent(), pageable, total);
     }
 
     @Override
-    public List<User> searchUser(String query) {
-        return repository.searchUsers(query);
+    @Transactional(readOnly = true)
+    public ScrollResponse<UserDto> scrollSearch(String query, String after, int size) {
+        int limit = scrollSize(size);
+        long cursor = KeysetCursor.decode(after);
+        List<UserDto> users = shards.gather(() -> repository.searchProjectedAfter(query, cursor, PageRequest.of(0, limit + 1)), BY_ID, limit + 1);
+        return toScrollResponse(users, limit);
     }
 
     @Override
-    public Page<User> searchWithPagination(String query, Pageable pageable) {
-        return repository.findByFirstNameContainingOrLastNameContainingOrEmailContaining(query, query, query, pageable);
+    public List<UserDto> autocomplete(String prefix, int limit) {
+        if (limit < 1 || limit > autocompleteIndex.getTopK()) {
+            throw new BadRequestException("Autocomplete limit must be between 1 and " + autocompleteIndex.getTopK());
+        }
+        if (autocompleteIndex.isReady()) {
+            return autocompleteIndex.suggest(prefix, limit);
+        }
+        String trimmed = prefix == null ? "" : prefix.trim();
+        if (trimmed.isEmpty()) {
+            return List.of();
+        }
+        // until the trie is built: the same matches, but in id order rather than the trie's ranking
+        String escaped = trimmed.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        return readCoalescer.execute("autocomplete",
+                () -> shards.gather(() -> repository.autocompleteProjected(escaped, PageRequest.of(0, limit)), BY_ID, limit),
+                escaped, limit);
+    }
+
+    private int scrollSize(int size) {
+        if (size < 1 || size > MAX_SCROLL_SIZE) {
+            throw new BadRequestException("Scroll size must be between 1 and " + MAX_SCROLL_SIZE);
+        }
+        return size;
+    }
+
+    // one extra row is fetched to learn whether another window exists without a COUNT query
+    private ScrollResponse<UserDto> toScrollResponse(List<UserDto> users, int limit) {
+        boolean hasNext = users.size() > limit;
+        List<UserDto> content = hasNext ? users.subList(0, limit) : users;
+        String nextCursor = hasNext ? KeysetCursor.encode(content.get(content.size() - 1).getId()) : null;
+        return new ScrollResponse<>(content, content.size(), nextCursor);
     }
 
     private User mapToEntity(UserDto userDto) {
-        return modelMapper.map(userDto, User.class);
+        return userMapper.toEntity(userDto);
     }
 
     private UserDto mapToDto(User user){
-        return modelMapper.map(user, UserDto.class);
+        return userMapper.toDto(user);
     }
 }
@@ -0,0 +1,315 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.datasource.ShardContext;
+import com.example.userapp.datasource.ShardRoutingDataSource;
+import com.example.userapp.entity.User;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Where user reads and writes go when the users table is sharded: single-user operations run on
+ * the shard encoded in the id, new users are spread round-robin, and everything else is scattered
+ * to all shards in parallel and merged in id order. Pages and slices ask every shard for the first
+ * {@code offset + size} rows, so deep pages get more expensive with the number of shards.
+ * <p>
+ * A shard's unique index only sees its own emails, so when sharded every email is also claimed in
+ * shard 0's {@code user_emails} table (its primary key is the email) before the user row is written
+ * to its shard, and released when that write fails, the email changes or the user is deleted.
+ * {@link #emailOwner} is the exact duplicate check across all shards.
+ * <p>
+ * Without {@code app.datasource.sharding.enabled} there is one shard and every method simply runs
+ * its work on the calling thread, unchanged.
+ */
+@Component
+public class UserShards implements DisposableBean {
+
+    private static final Sort BY_ID = Sort.by("id");
+    private static final String CLAIM = "INSERT INTO user_emails (user_id, email) VALUES (?, ?)";
+    private static final String RELEASE_CLAIM = "DELETE FROM user_emails WHERE user_id = ? AND email = ?";
+    private static final String RELEASE_OTHER_CLAIMS = "DELETE FROM user_emails WHERE user_id = ? AND email <> ?";
+    private static final String RELEASE_ALL_CLAIMS = "DELETE FROM user_emails WHERE user_id = ?";
+
+    private final int count;
+    private final UserIdAllocator idAllocator;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate shardTransaction;
+    private final TransactionTemplate claimTransaction;
+    private final ExecutorService scatterExecutor;
+    private final AtomicInteger nextShard = new AtomicInteger();
+
+    public UserShards(ObjectProvider<ShardRoutingDataSource> routingDataSource, UserIdAllocator idAllocator,
+                      JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                      @Value("${app.datasource.sharding.scatter-threads:16}") int scatterThreads) {
+        ShardRoutingDataSource routing = routingDataSource.getIfAvailable();
+        this.count = routing == null ? 1 : routing.size();
+        this.idAllocator = idAllocator;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardTransaction = new TransactionTemplate(transactionManager);
+        this.shardTransaction.setReadOnly(true);
+        this.shardTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.claimTransaction = new TransactionTemplate(transactionManager);
+        this.claimTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.scatterExecutor = count == 1 ? null : Executors.newFixedThreadPool(scatterThreads, runnable -> {
+            Thread thread = new Thread(runnable, "user-shard-scatter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    /**
+     * Runs single-user work on the shard holding {@code id}. An id naming no configured shard is
+     * looked up on shard 0, where no row can carry it.
+     */
+    public <T> T onShardOf(long id, Supplier<T> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        int shard = ShardRoutingDataSource.shardOf(id);
+        return ShardContext.on(shard < count ? shard : 0, work);
+    }
+
+    /**
+     * Picks the next shard for the users, gives them ids that encode it, claims their emails and runs
+     * the insert there. Ids come from shard 0's pooled sequence, so they are unique across shards. An
+     * email claimed by another user fails the whole call with a {@link DuplicateKeyException} before
+     * anything is inserted; a failed insert releases the claims again.
+     */
+    public <T> T insert(List<User> users, Supplier<T> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        int shard = Math.floorMod(nextShard.getAndIncrement(), count);
+        for (User user : users) {
+            user.setId(ShardRoutingDataSource.encode(ShardContext.on(0, idAllocator::next), shard));
+        }
+        List<User> withEmail = users.stream().filter(user -> user.getEmail() != null).toList();
+        forEachClaim(CLAIM, withEmail);
+        try {
+            return ShardContext.on(shard, work);
+        } catch (RuntimeException e) {
+            forEachClaim(RELEASE_CLAIM, withEmail);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs an update of user {@code id} that sets its email to {@code email}, on the user's shard.
+     * When sharded the email is claimed first, a {@link DuplicateKeyException} when another user holds
+     * it, and once {@code work} reports the row updated the user's previous claim is released.
+     */
+    public int updateEmail(long id, String email, IntSupplier work) {
+        if (!isSharded()) {
+            return work.getAsInt();
+        }
+        boolean claimed = email != null && claim(id, email);
+        int updated;
+        try {
+            updated = onShardOf(id, work::getAsInt);
+        } catch (RuntimeException e) {
+            if (claimed) {
+                release(RELEASE_CLAIM, id, email);
+            }
+            throw e;
+        }
+        if (updated > 0) {
+            if (email == null) {
+                release(RELEASE_ALL_CLAIMS, id);
+            } else {
+                release(RELEASE_OTHER_CLAIMS, id, email);
+            }
+        } else if (claimed) {
+            release(RELEASE_CLAIM, id, email);
+        }
+        return updated;
+    }
+
+    /**
+     * Runs a delete of user {@code id} on its shard and, when sharded and a row was deleted, releases
+     * the user's email.
+     */
+    public int delete(long id, IntSupplier work) {
+        int deleted = onShardOf(id, work::getAsInt);
+        if (isSharded() && deleted > 0) {
+            release(RELEASE_ALL_CLAIMS, id);
+        }
+        return deleted;
+    }
+
+    /**
+     * Returns the id of the user holding {@code email} on any shard, or {@code null}; only meaningful
+     * when sharded. Reads shard 0's claims on the primary, and counts an insert still in flight.
+     */
+    public Long emailOwner(String email) {
+        return DataSourceRouting.onPrimary(() -> ShardContext.on(0, () -> jdbcTemplate.query(
+                "SELECT user_id FROM user_emails WHERE email = ?",
+                rs -> rs.next() ? rs.getLong(1) : null, User.normalizeEmail(email))));
+    }
+
+    /**
+     * Runs the work once per shard, one after the other on the calling thread; when sharded each run
+     * gets its own read-only transaction, since a transaction stays on the shard it started on.
+     */
+    public void forEachShard(Runnable work) {
+        if (!isSharded()) {
+            work.run();
+            return;
+        }
+        for (int shard = 0; shard < count; shard++) {
+            ShardContext.run(shard, () -> shardTransaction.executeWithoutResult(status -> work.run()));
+        }
+    }
+
+    /**
+     * Runs the read on every shard in parallel and returns the results in shard order. The read
+     * must open its own transaction, as repository methods do.
+     */
+    public <T> List<T> scatter(Supplier<T> read) {
+        if (!isSharded()) {
+            return Collections.singletonList(read.get());
+        }
+        List<CompletableFuture<T>> results = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            results.add(CompletableFuture.supplyAsync(() -> ShardContext.on(target, read), scatterExecutor));
+        }
+        try {
+            return results.stream().map(CompletableFuture::join).toList();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Scatters a list read and merges the shards' lists in {@code order}, keeping at most
+     * {@code limit} elements. When limiting, each shard must return its own first {@code limit}
+     * elements in that order.
+     */
+    public <T> List<T> gather(Supplier<List<T>> read, Comparator<? super T> order, int limit) {
+        if (!isSharded()) {
+            return read.get();
+        }
+        return merge(scatter(read), order, limit);
+    }
+
+    /**
+     * Scatters a page query. Every shard returns its first {@code offset + size} rows ordered by id;
+     * the merged page takes its slice of them and the sum of the shards' totals.
+     */
+    public <T> Page<T> page(Function<Pageable, Page<T>> query, Pageable pageable, Comparator<? super T> byId) {
+        if (!isSharded()) {
+            return query.apply(pageable);
+        }
+        Pageable head = headOf(pageable);
+        List<Page<T>> pages = scatter(() -> query.apply(head));
+        long total = pages.stream().mapToLong(Page::getTotalElements).sum();
+        List<T> merged = merge(pages.stream().map(Page::getContent).toList(), byId, head.getPageSize());
+        return new PageImpl<>(window(merged, pageable), pageable, total);
+    }
+
+    /**
+     * Like {@link #page} without totals: there is a next slice when any shard has more rows than it
+     * returned, or the merged rows run past this slice.
+     */
+    public <T> Slice<T> slice(Function<Pageable, Slice<T>> query, Pageable pageable, Comparator<? super T> byId) {
+        if (!isSharded()) {
+            return query.apply(pageable);
+        }
+        Pageable head = headOf(pageable);
+        List<Slice<T>> slices = scatter(() -> query.apply(head));
+        List<T> merged = merge(slices.stream().map(Slice::getContent).toList(), byId, Integer.MAX_VALUE);
+        boolean hasNext = merged.size() > head.getPageSize() || slices.stream().anyMatch(Slice::hasNext);
+        return new SliceImpl<>(window(merged, pageable), pageable, hasNext);
+    }
+
+    @Override
+    public void destroy() {
+        if (scatterExecutor != null) {
+            scatterExecutor.shutdownNow();
+        }
+    }
+
+    // claims the email for the user, false when the user already holds it
+    private boolean claim(long id, String email) {
+        return ShardContext.on(0, () -> claimTransaction.execute(status -> {
+            Long owner = jdbcTemplate.query("SELECT user_id FROM user_emails WHERE email = ?",
+                    rs -> rs.next() ? rs.getLong(1) : null, email);
+            if (owner != null) {
+                if (owner == id) {
+                    return false;
+                }
+                throw new DuplicateKeyException("email " + email + " is claimed by user " + owner);
+            }
+            // a concurrent claim of the same email fails here on the primary key
+            jdbcTemplate.update(CLAIM, id, email);
+            return true;
+        }));
+    }
+
+    // runs sql once per user with its id and email, in one batch
+    private void forEachClaim(String sql, List<User> users) {
+        ShardContext.run(0, () -> claimTransaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(
+                sql, users, users.size(), (statement, user) -> {
+                    statement.setLong(1, user.getId());
+                    statement.setString(2, User.normalizeEmail(user.getEmail()));
+                })));
+    }
+
+    private void release(String sql, Object... args) {
+        ShardContext.run(0, () -> claimTransaction.executeWithoutResult(status -> jdbcTemplate.update(sql, args)));
+    }
+
+    private static Pageable headOf(Pageable pageable) {
+        return PageRequest.of(0, Math.toIntExact(pageable.getOffset() + pageable.getPageSize()), BY_ID);
+    }
+
+    private static <T> List<T> window(List<T> merged, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), merged.size());
+        return merged.subList(from, Math.min(from + pageable.getPageSize(), merged.size()));
+    }
+
+    private static <T> List<T> merge(List<? extends List<T>> lists, Comparator<? super T> order, int limit) {
+        List<T> merged = new ArrayList<>();
+        lists.forEach(merged::addAll);
+        merged.sort(order);
+        return merged.size() > limit ? merged.subList(0, limit) : merged;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.exception.DuplicateEmailException;
+import com.example.userapp.exception.ResourceNotFoundException;
+import com.example.userapp.exception.ServiceBusyException;
+import com.example.userapp.mapper.UserMapper;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.payload.WriteBehindStatus;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.EmailBloomFilter;
+import com.example.userapp.service.WriteBehindUserService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Write-behind creates: users are validated and given an id on the request thread, then queued;
+ * a single flusher thread inserts them with JDBC batches once {@code batch-size} users are waiting
+ * or the oldest has waited {@code flush-interval}. A full queue is rejected with 503 rather than
+ * blocking request threads.
+ * <p>
+ * Inserts bypass JPA, so the flusher publishes the {@link UserChangedEvent}s itself, inside each
+ * insert transaction: listeners act once it commits, and a batch moves the shared write generation once. Emails are checked at enqueue against the stored users (through the Bloom filter) and the
+ * users still queued, so a duplicate gets its 409 instead of a 202. Rows that still fail (an email
+ * stored by another instance in between) are logged, counted and kept with their reason for
+ * {@link #getStatus}. On shutdown the flusher stops taking requests after the web server has stopped
+ * and drains the queue before the connection pool closes.
+ */
+@Service
+@ConditionalOnProperty(name = "app.users.write-behind.enabled", havingValue = "true")
+public class WriteBehindUserServiceImpl implements WriteBehindUserService, SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(WriteBehindUserServiceImpl.class);
+
+    private static final String INSERT_USER = "INSERT INTO users (id, first_name, last_name, email, version) VALUES (?, ?, ?, ?, 0)";
+    // stopped after the web server (Integer.MAX_VALUE - 1), so no request can enqueue while the queue drains
+    private static final int PHASE = Integer.MAX_VALUE - 1024;
+    private static final int MAX_BATCH_ATTEMPTS = 3;
+    // bounds how long an idle flusher takes to notice a stop
+    private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final UserMapper userMapper;
+    private final UserRepository repository;
+    private final UserIdAllocator idAllocator;
+    private final EmailBloomFilter emailFilter;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BlockingQueue<User> queue;
+    // emails and ids of the users accepted but not flushed yet
+    private final Set<String> pendingEmails = ConcurrentHashMap.newKeySet();
+    private final Set<Long> pendingIds = ConcurrentHashMap.newKeySet();
+    // reason per id of the users whose insert failed after their 202
+    private final Cache<Long, String> failures;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final Duration drainTimeout;
+    private final ReadWriteLock acceptLock = new ReentrantReadWriteLock();
+    private final Counter flushed;
+    private final Counter failed;
+    private final Counter rejected;
+
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public WriteBehindUserServiceImpl(UserMapper userMapper, UserRepository repository, UserIdAllocator idAllocator,
+                                      EmailBloomFilter emailFilter, JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      ApplicationEventPublisher eventPublisher, MeterRegistry registry,
+                                      @Value("${app.users.write-behind.queue-capacity:10000}") int queueCapacity,
+                                      @Value("${app.users.write-behind.batch-size:500}") int batchSize,
+                                      @Value("${app.users.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                      @Value("${app.users.write-behind.drain-timeout:30s}") Duration drainTimeout,
+                                      @Value("${app.users.write-behind.failure-retention:1h}") Duration failureRetention,
+                                      @Value("${app.users.write-behind.max-retained-failures:10000}") int maxRetainedFailures) {
+        this.userMapper = userMapper;
+        this.repository = repository;
+        this.idAllocator = idAllocator;
+        this.emailFilter = emailFilter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.drainTimeout = drainTimeout;
+        this.failures = Caffeine.newBuilder()
+                .expireAfterWrite(failureRetention)
+                .maximumSize(maxRetainedFailures)
+                .build();
+        Gauge.builder("users.write.behind.queue.size", queue, BlockingQueue::size).register(registry);
+        this.flushed = Counter.builder("users.write.behind.rows").tag("outcome", "stored").register(registry);
+        this.failed = Counter.builder("users.write.behind.rows").tag("outcome", "failed").register(registry);
+        this.rejected = Counter.builder("users.write.behind.rows").tag("outcome", "rejected").register(registry);
+    }
+
+    @Override
+    public UserDto enqueueUser(UserDto userDto) {
+        User user = userMapper.toEntity(userDto);
+        String email = User.normalizeEmail(user.getEmail());
+        if (pendingEmails.contains(email)
+                || emailFilter.isTaken(email, taken -> DataSourceRouting.onPrimary(() -> repository.existsByEmail(taken)))) {
+            throw new DuplicateEmailException(email);
+        }
+        user.setEmail(email);
+        // claimed before queueing: of two concurrent requests for one email only one gets here
+        if (!pendingEmails.add(email)) {
+            throw new DuplicateEmailException(email);
+        }
+        acceptLock.readLock().lock();
+        try {
+            if (!accepting) {
+                throw new ServiceBusyException("User writes are shutting down, retry later");
+            }
+            user.setId(idAllocator.next());
+            pendingIds.add(user.getId());
+            if (!queue.offer(user)) {
+                rejected.increment();
+                throw new ServiceBusyException("User write queue is full, retry later");
+            }
+        } catch (RuntimeException e) {
+            settled(user);
+            throw e;
+        } finally {
+            acceptLock.readLock().unlock();
+        }
+        return userMapper.toDto(user);
+    }
+
+    @Override
+    public WriteBehindStatus getStatus(long id) {
+        if (pendingIds.contains(id)) {
+            return new WriteBehindStatus(id, WriteBehindStatus.State.PENDING, null);
+        }
+        String reason = failures.getIfPresent(id);
+        if (reason != null) {
+            return new WriteBehindStatus(id, WriteBehindStatus.State.FAILED, reason);
+        }
+        if (DataSourceRouting.onPrimary(() -> repository.existsById(id))) {
+            return new WriteBehindStatus(id, WriteBehindStatus.State.STORED, null);
+        }
+        throw new ResourceNotFoundException("user", id);
+    }
+
+    @Override
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    @Override
+    public void start() {
+        accepting = true;
+        running = true;
+        flusher = new Thread(this::flushLoop, "user-write-behind");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @Override
+    public void stop() {
+        acceptLock.writeLock().lock();
+        try {
+            accepting = false;
+        } finally {
+            acceptLock.writeLock().unlock();
+        }
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        try {
+            flusher.join(drainTimeout.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            flusher.interrupt();
+            log.error("Write-behind queue not drained within {}, {} queued users were not stored", drainTimeout, queue.size());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void flushLoop() {
+        List<User> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                User first = queue.poll(Math.min(flushIntervalNanos, IDLE_POLL_NANOS), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    // once stopping, flush whatever is queued without waiting for more; waits are
+                    // capped so a stop is noticed while a batch is still filling
+                    long remaining = running ? deadline - System.nanoTime() : 0;
+                    User next = remaining > 0
+                            ? queue.poll(Math.min(remaining, IDLE_POLL_NANOS), TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next != null) {
+                        batch.add(next);
+                    } else if (remaining <= 0) {
+                        break;
+                    }
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<User> batch) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                insert(batch);
+                stored(batch);
+                return;
+            } catch (DataIntegrityViolationException e) {
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_BATCH_ATTEMPTS) {
+                    break;
+                }
+                log.warn("Write-behind insert of {} users failed (attempt {}), retrying: {}", batch.size(), attempt, e.getMessage());
+                if (!pause()) {
+                    break;
+                }
+            }
+        }
+        // one bad row fails the whole batch; store the rest row by row
+        for (User user : batch) {
+            try {
+                insert(List.of(user));
+                stored(List.of(user));
+            } catch (RuntimeException e) {
+                String reason = NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                failed.increment();
+                failures.put(user.getId(), reason);
+                settled(user);
+                log.error("Write-behind insert of user {} ({}) failed: {}", user.getId(), user.getEmail(), reason);
+            }
+        }
+    }
+
+    private void insert(List<User> users) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(INSERT_USER, users, users.size(), (statement, user) -> {
+                statement.setLong(1, user.getId());
+                statement.setString(2, user.getFirstName());
+                statement.setString(3, user.getLastName());
+                statement.setString(4, user.getEmail());
+            });
+            for (User user : users) {
+                user.setVersion(0L);
+                eventPublisher.publishEvent(UserChangedEvent.saved(user));
+            }
+        });
+    }
+
+    private void stored(List<User> users) {
+        // the email filter learnt the emails when the insert committed, before the pending claims are dropped
+        users.forEach(this::settled);
+        flushed.increment(users.size());
+    }
+
+    private void settled(User user) {
+        pendingEmails.remove(user.getEmail());
+        if (user.getId() != null) {
+            pendingIds.remove(user.getId());
+        }
+    }
+
+    private boolean pause() {
+        try {
+            TimeUnit.NANOSECONDS.sleep(flushIntervalNanos);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
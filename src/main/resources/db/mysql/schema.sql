@@ -0,0 +1,78 @@
+-- Schema for the prod profile, which runs with spring.jpa.hibernate.ddl-auto=none and executes this
+-- script at every boot (spring.sql.init in application-perf.properties). Every statement is idempotent:
+-- it creates a fresh database and upgrades one created by earlier versions (ddl-auto=update). Matches the entities
+
+CREATE TABLE IF NOT EXISTS users (
+    id         BIGINT       NOT NULL,
+    email      VARCHAR(255),
+    first_name VARCHAR(255),
+    last_name  VARCHAR(255),
+    version    BIGINT,
+    PRIMARY KEY (id),
+    UNIQUE KEY idx_users_email (email),
+    KEY idx_users_last_first (last_name, first_name)
+) ENGINE = InnoDB;
+
+-- MySQL has no ADD COLUMN / ADD INDEX IF NOT EXISTS: each upgrade runs only when information_schema lacks it
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE users ADD COLUMN version BIGINT', 'DO 0')
+            FROM information_schema.columns
+            WHERE table_schema = DATABASE() AND table_name = 'users' AND column_name = 'version');
+PREPARE upgrade FROM @ddl;
+EXECUTE upgrade;
+DEALLOCATE PREPARE upgrade;
+
+-- rows from before optimistic locking start at version 0
+UPDATE users SET version = 0 WHERE version IS NULL;
+
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE users ADD UNIQUE INDEX idx_users_email (email)', 'DO 0')
+            FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = 'users' AND index_name = 'idx_users_email');
+PREPARE upgrade FROM @ddl;
+EXECUTE upgrade;
+DEALLOCATE PREPARE upgrade;
+
+SET @ddl = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE users ADD INDEX idx_users_last_first (last_name, first_name)', 'DO 0')
+            FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = 'users' AND index_name = 'idx_users_last_first');
+PREPARE upgrade FROM @ddl;
+EXECUTE upgrade;
+DEALLOCATE PREPARE upgrade;
+
+-- users_seq emulated as a table. The pooled optimizer reads next_val = N, stores N + 50 and hands out
+-- N - 49 .. N, so a value of MAX(id) + 50 starts right after the highest existing id. Ids used to be
+-- IDENTITY: a new table is seeded from the rows already there, and a table that ddl-auto=update created
+-- at 1 over existing rows is moved past them. A sequence already ahead of the rows is left alone
+CREATE TABLE IF NOT EXISTS users_seq (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO users_seq (next_val)
+SELECT seed.next_val
+FROM (SELECT COALESCE(MAX(id), 0) + 50 AS next_val FROM users) AS seed,
+     (SELECT COUNT(*) AS present FROM users_seq) AS existing
+WHERE existing.present = 0;
+
+UPDATE users_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 50 FROM users)
+WHERE next_val < (SELECT COALESCE(MAX(id), 0) + 50 FROM users);
+
+-- Counters of committed changes shared by all instances (entity/WriteGeneration); cached responses are keyed by them
+CREATE TABLE IF NOT EXISTS write_generations (
+    name       VARCHAR(64) NOT NULL,
+    generation BIGINT      NOT NULL,
+    PRIMARY KEY (name)
+) ENGINE = InnoDB;
+
+INSERT IGNORE INTO write_generations (name, generation) VALUES ('users', 0);
+
+-- Email claims (entity/UserEmail) keeping emails unique across shards; only used with sharding enabled.
+-- Filled from shard 0's users the first time; emails already stored on other shards must be copied in by hand
+CREATE TABLE IF NOT EXISTS user_emails (
+    email   VARCHAR(255) NOT NULL,
+    user_id BIGINT       NOT NULL,
+    PRIMARY KEY (email),
+    INDEX idx_user_emails_user (user_id)
+) ENGINE = InnoDB;
+
+INSERT IGNORE INTO user_emails (email, user_id)
+SELECT email, id FROM users
+WHERE email IS NOT NULL AND NOT EXISTS (SELECT 1 FROM user_emails);
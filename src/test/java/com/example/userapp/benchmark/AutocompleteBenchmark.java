@@ -0,0 +1,92 @@
+package com.example.userapp.benchmark;
+
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.UserAutocompleteIndex;
+import com.example.userapp.search.UserSearchIndex;
+import com.example.userapp.service.impl.UserShards;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares typeahead lookups on the prefix trie with the trigram index and the prefix LIKE fallback.
+ * The setup also prints the heap retained by a freshly built trie, scaled to a million users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AutocompleteBenchmark {
+
+    private static final int LIMIT = 10;
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    // one keystroke, a common surname, and an almost unique email prefix
+    @Param({"s", "silva", "tony.stark12"})
+    private String prefix;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository repository;
+    private UserSearchIndex searchIndex;
+    private UserAutocompleteIndex autocompleteIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, rows);
+        repository = context.getBean(UserRepository.class);
+        searchIndex = context.getBean(UserSearchIndex.class);
+        searchIndex.rebuild();
+        autocompleteIndex = buildMeasured();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<UserDto> prefixTrie() {
+        return autocompleteIndex.suggest(prefix, LIMIT);
+    }
+
+    @Benchmark
+    public List<UserDto> trigramIndex() {
+        return searchIndex.search(prefix);
+    }
+
+    @Benchmark
+    public List<UserDto> prefixLikeQuery() {
+        return repository.autocompleteProjected(prefix, PageRequest.of(0, LIMIT));
+    }
+
+    private UserAutocompleteIndex buildMeasured() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedHeap(memory);
+        UserAutocompleteIndex index = new UserAutocompleteIndex(repository,
+                context.getBean(PlatformTransactionManager.class), context.getBean(UserShards.class), LIMIT, true);
+        index.rebuild();
+        long retained = usedHeap(memory) - before;
+        System.out.printf("%nautocomplete trie: %d users, %d nodes, %d bytes retained, ~%d MB per million users%n",
+                index.size(), index.nodeCount(), retained, retained * 1_000_000L / index.size() / (1024 * 1024));
+        return index;
+    }
+
+    private static long usedHeap(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
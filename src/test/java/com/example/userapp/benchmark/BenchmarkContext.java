@@ -0,0 +1,69 @@
+package com.example.userapp.benchmark;
+
+import com.example.userapp.UserAppApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Boots the application against a private in-memory H2 database and seeds it with synthetic users
+ * so benchmarks measure the real controller/service/repository wiring.
+ */
+final class BenchmarkContext {
+
+    static final String[] FIRST_NAMES = {"Ramesh", "Tony", "Bruce", "Diana", "Clark", "Natasha", "Peter", "Wanda",
+            "Steve", "Carol", "Jayod", "Nimal", "Kamal", "Sunil", "Amara", "Dilini"};
+    static final String[] LAST_NAMES = {"Silva", "Stark", "Wayne", "Prince", "Kent", "Romanoff", "Parker", "Maximoff",
+            "Rogers", "Danvers", "Jayasekara", "Perera", "Fernando", "Bandara", "Dissanayake", "Gunawardena"};
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(UserAppApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:bench-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN")
+                .run();
+    }
+
+    static void seed(ConfigurableApplicationContext context, int rows) {
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>(1000);
+        for (int i = 0; i < rows; i++) {
+            String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            batch.add(new Object[]{firstName, lastName, email(firstName, lastName, i)});
+            if (batch.size() == 1000) {
+                insert(jdbcTemplate, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(jdbcTemplate, batch);
+        }
+    }
+
+    static long[] ids(ConfigurableApplicationContext context) {
+        return context.getBean(JdbcTemplate.class).queryForList("SELECT id FROM users ORDER BY id", Long.class)
+                .stream().mapToLong(Long::longValue).toArray();
+    }
+
+    static String email(String firstName, String lastName, int n) {
+        return (firstName + "." + lastName + n + "@example.com").toLowerCase();
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, List<Object[]> batch) {
+        jdbcTemplate.batchUpdate("INSERT INTO users (id, first_name, last_name, email, version) VALUES (NEXT VALUE FOR users_seq, ?, ?, ?, 0)", batch);
+    }
+}
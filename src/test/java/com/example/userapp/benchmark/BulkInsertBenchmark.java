@@ -0,0 +1,69 @@
+package com.example.userapp.benchmark;
+
+import com.example.userapp.payload.BatchCreateResponse;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of creating {@code users} users on H2: one {@code saveUser} call (one transaction and
+ * one round trip) per user, against a single {@code saveUsers} call that inserts in JDBC batches.
+ * Scores are operations per second, so multiply by {@code users} for rows per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BulkInsertBenchmark {
+
+    @Param({"1000"})
+    private int users;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        userService = context.getBean(UserService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void singleInserts(Blackhole blackhole) {
+        for (UserDto userDto : nextUsers()) {
+            blackhole.consume(userService.saveUser(userDto));
+        }
+    }
+
+    @Benchmark
+    public BatchCreateResponse batchInsert() {
+        return userService.saveUsers(nextUsers());
+    }
+
+    private List<UserDto> nextUsers() {
+        List<UserDto> userDtos = new ArrayList<>(users);
+        for (int i = 0; i < users; i++) {
+            long n = sequence++;
+            userDtos.add(UserDto.builder()
+                    .firstName("Bulk")
+                    .lastName("Insert")
+                    .email("bulk" + n + "@example.com")
+                    .build());
+        }
+        return userDtos;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.userapp.benchmark;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.mapper.UserMapper;
+import com.example.userapp.mapper.UserMapperImpl;
+import com.example.userapp.payload.UserDto;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-row cost of User/UserDto mapping: the reflective ModelMapper path the service used to take
+ * against the hand-written {@link UserMapperImpl}. The gc profiler enabled by the benchmark profile
+ * reports the allocation rate ({@code gc.alloc.rate.norm}, bytes per operation).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+    private final ModelMapper modelMapper = new ModelMapper();
+    private final UserMapper userMapper = new UserMapperImpl();
+
+    private User user;
+    private UserDto userDto;
+
+    @Setup
+    public void setUp() {
+        user = User.builder().id(42L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+        userDto = UserDto.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
+    }
+
+    @Benchmark
+    public UserDto modelMapperToDto() {
+        return modelMapper.map(user, UserDto.class);
+    }
+
+    @Benchmark
+    public UserDto userMapperToDto() {
+        return userMapper.toDto(user);
+    }
+
+    @Benchmark
+    public User modelMapperToEntity() {
+        return modelMapper.map(userDto, User.class);
+    }
+
+    @Benchmark
+    public User userMapperToEntity() {
+        return userMapper.toEntity(userDto);
+    }
+}
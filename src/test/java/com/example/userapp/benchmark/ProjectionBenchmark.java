@@ -0,0 +1,71 @@
+package com.example.userapp.benchmark;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads one page of a 100k-row table as managed entities in a read-write transaction (what the
+ * list endpoints used to do) and as DTO projections in a read-only transaction. Run with
+ * {@code -prof gc} to compare allocation per page as well as latency.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProjectionBenchmark {
+
+    private static final int ROWS = 100_000;
+    private static final int SHALLOW_PAGES = 10;
+
+    @Param({"100", "1000"})
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository repository;
+    private UserService userService;
+    private TransactionTemplate readWriteTransaction;
+    private int page;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, ROWS);
+        repository = context.getBean(UserRepository.class);
+        userService = context.getBean(UserService.class);
+        readWriteTransaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Page<User> managedEntities() {
+        int page = nextPage();
+        return readWriteTransaction.execute(status -> repository.findAll(PageRequest.of(page, pageSize)));
+    }
+
+    @Benchmark
+    public Page<UserDto> readOnlyProjection() {
+        return userService.getUserWithPagination(nextPage(), pageSize);
+    }
+
+    // cycles through the first pages so OFFSET skipping does not drown out the per-row cost
+    private int nextPage() {
+        page = (page + 1) % SHALLOW_PAGES;
+        return page;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.userapp.benchmark;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.UserSearchIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the triple leading-wildcard JPQL search with the in-memory trigram index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    // selective infix, common surname, and an email fragment
+    @Param({"ayasek", "silva", "stark12"})
+    private String query;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository repository;
+    private UserSearchIndex searchIndex;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, rows);
+        repository = context.getBean(UserRepository.class);
+        searchIndex = context.getBean(UserSearchIndex.class);
+        searchIndex.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<User> jpqlLikeScan() {
+        return repository.searchUsers(query);
+    }
+
+    @Benchmark
+    public List<UserDto> trigramIndex() {
+        return searchIndex.search(query);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.userapp.benchmark;
+
+import com.example.userapp.payload.UserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encode time per format for a page of users, with and without gzip. The encoded size (the bytes
+ * that go on the wire for that combination) is printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"identity", "gzip"})
+    private String encoding;
+
+    @Param({"100", "1000"})
+    private int pageSize;
+
+    private ObjectWriter writer;
+    private PageImpl<UserDto> page;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        ObjectMapper mapper = switch (format) {
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            default -> new ObjectMapper();
+        };
+        writer = mapper.writer();
+
+        Random random = new Random(42);
+        List<UserDto> users = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            String firstName = BenchmarkContext.FIRST_NAMES[random.nextInt(BenchmarkContext.FIRST_NAMES.length)];
+            String lastName = BenchmarkContext.LAST_NAMES[random.nextInt(BenchmarkContext.LAST_NAMES.length)];
+            users.add(UserDto.builder().id(i + 1L).firstName(firstName).lastName(lastName)
+                    .email(BenchmarkContext.email(firstName, lastName, i)).version(0L).build());
+        }
+        page = new PageImpl<>(users, PageRequest.of(0, pageSize), 100_000);
+
+        System.out.printf("%n%s/%s, %d users: %d bytes on the wire%n", format, encoding, pageSize, encode().length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(pageSize * 128);
+        try (OutputStream out = "gzip".equals(encoding) ? new GZIPOutputStream(bytes) : bytes) {
+            writer.writeValue(out, page);
+        }
+        return bytes.toByteArray();
+    }
+}
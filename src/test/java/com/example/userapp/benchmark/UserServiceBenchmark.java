@@ -0,0 +1,94 @@
+package com.example.userapp.benchmark;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.UserSearchIndex;
+import com.example.userapp.service.UserService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hot paths of {@link UserService} against a seeded H2 database. {@code getUserById} goes through the
+ * id cache; {@code findByIdUncached} is the bare repository round trip underneath it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    @Param({"10000", "100000"})
+    private int rows;
+
+    private ConfigurableApplicationContext context;
+    private UserService userService;
+    private UserRepository repository;
+    private long[] ids;
+    private final AtomicLong created = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, rows);
+        userService = context.getBean(UserService.class);
+        repository = context.getBean(UserRepository.class);
+        context.getBean(UserSearchIndex.class).rebuild();
+        ids = BenchmarkContext.ids(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public UserDto getUserById() {
+        return userService.getUserById(randomId());
+    }
+
+    @Benchmark
+    public Optional<User> findByIdUncached() {
+        return repository.findById(randomId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<UserDto> getAllUsers() {
+        return userService.getAllUsers();
+    }
+
+    @Benchmark
+    public List<UserDto> searchUser() {
+        return userService.searchUser("jayasek");
+    }
+
+    @Benchmark
+    public Page<UserDto> searchWithPagination() {
+        return userService.searchWithPagination("silva", PageRequest.of(3, 20));
+    }
+
+    @Benchmark
+    public UserDto saveUser() {
+        long n = created.incrementAndGet();
+        return userService.saveUser(UserDto.builder()
+                .firstName("Bench")
+                .lastName("Mark")
+                .email("bench" + n + "@example.com")
+                .build());
+    }
+
+    private long randomId() {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.userapp.cache;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.event.UserChangedEvent;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+
+class ReadCoalescerTest {
+
+    private final ReadCoalescer readCoalescer = new ReadCoalescer(mock(PlatformTransactionManager.class));
+
+    @Test
+    public void whenLeaderFails_then_waitingCallersSeeSameException() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> readCoalescer.execute("find", () -> {
+            await(release);
+            throw new IllegalStateException("query failed");
+        }, "q"));
+        awaitExecuted(1);
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> readCoalescer.execute("find", () -> "unused", "q"));
+        awaitCoalesced(1);
+        release.countDown();
+
+        Assertions.assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasRootCauseMessage("query failed");
+        Assertions.assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasRootCauseMessage("query failed");
+    }
+
+    @Test
+    public void whenArgumentsDiffer_then_readsRunSeparately() {
+        AtomicInteger reads = new AtomicInteger();
+
+        readCoalescer.execute("find", reads::incrementAndGet, "q", 0);
+        readCoalescer.execute("find", reads::incrementAndGet, "q", 1);
+        readCoalescer.execute("count", reads::incrementAndGet, "q", 0);
+
+        Assertions.assertThat(reads).hasValue(3);
+        Assertions.assertThat(readCoalescer.coalescedCount()).isZero();
+    }
+
+    @Test
+    public void whenCallerIsPinnedToPrimary_then_neverJoinUnpinnedFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> replicaRead = CompletableFuture.supplyAsync(() -> readCoalescer.execute("find", () -> {
+            await(release);
+            return "replica";
+        }, "q"));
+        awaitExecuted(1);
+
+        String primaryRead = DataSourceRouting.onPrimary(() -> readCoalescer.execute("find", () -> "primary", "q"));
+        release.countDown();
+
+        Assertions.assertThat(primaryRead).isEqualTo("primary");
+        Assertions.assertThat(replicaRead.get(5, TimeUnit.SECONDS)).isEqualTo("replica");
+        Assertions.assertThat(readCoalescer.coalescedCount()).isZero();
+    }
+
+    @Test
+    public void whenUserChangedDuringFlight_then_laterCallersQueryAgain() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<String> stale = CompletableFuture.supplyAsync(() -> readCoalescer.execute("find", () -> {
+            await(release);
+            return "before";
+        }, "q"));
+        awaitExecuted(1);
+
+        readCoalescer.onUserChanged(UserChangedEvent.deleted(1L));
+        String fresh = readCoalescer.execute("find", () -> "after", "q");
+        release.countDown();
+
+        Assertions.assertThat(fresh).isEqualTo("after");
+        Assertions.assertThat(stale.get(5, TimeUnit.SECONDS)).isEqualTo("before");
+        Assertions.assertThat(readCoalescer.coalescedCount()).isZero();
+    }
+
+    private void awaitExecuted(long count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (readCoalescer.executedCount() < count && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private void awaitCoalesced(long count) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (readCoalescer.coalescedCount() < count && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.userapp.cache;
+
+import com.example.userapp.event.UserChangedEvent;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+class ResponseBodyCacheTest {
+
+    private final ResponseBodyCache responseCache =
+            new ResponseBodyCache(DataSize.ofKilobytes(16), Duration.ofMinutes(1), DataSize.ofBytes(100));
+
+    @Test
+    public void whenClientAcceptsGzip_then_storeLargeBodiesCompressed() throws IOException {
+        byte[] large = "[{\"firstName\":\"Ramesh\"}]".repeat(20).getBytes(StandardCharsets.UTF_8);
+        byte[] small = "[]".getBytes(StandardCharsets.UTF_8);
+
+        ResponseBodyCache.CachedResponse gzipped = responseCache.put(key("1", true), large, "application/json", null);
+        ResponseBodyCache.CachedResponse plain = responseCache.put(key("2", true), small, "application/json", null);
+        ResponseBodyCache.CachedResponse identity = responseCache.put(key("3", false), large, "application/json", null);
+
+        Assertions.assertThat(gzipped.gzipped()).isTrue();
+        Assertions.assertThat(gzipped.body()).hasSizeLessThan(large.length);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.body()))) {
+            Assertions.assertThat(in.readAllBytes()).isEqualTo(large);
+        }
+        Assertions.assertThat(plain.gzipped()).isFalse();
+        Assertions.assertThat(identity.body()).isSameAs(large);
+        Assertions.assertThat(responseCache.get(key("1", true))).isSameAs(gzipped);
+    }
+
+    @Test
+    public void whenOverByteCap_then_evictEntries() {
+        for (int page = 0; page < 10; page++) {
+            responseCache.put(key(Integer.toString(page), false), new byte[4096], "application/json", null);
+        }
+        responseCache.nativeCache().cleanUp();
+
+        Assertions.assertThat(responseCache.weightedSize()).isLessThanOrEqualTo(DataSize.ofKilobytes(16).toBytes());
+        Assertions.assertThat(responseCache.statistics().getEvictions()).isPositive();
+    }
+
+    @Test
+    public void whenUserChanged_then_dropEveryEntry() {
+        responseCache.put(key("0", false), new byte[10], "application/json", "W/\"a-0-0-10\"");
+        Assertions.assertThat(responseCache.get(key("0", false))).isNotNull();
+
+        responseCache.onUserChanged(UserChangedEvent.deleted(1L));
+
+        Assertions.assertThat(responseCache.get(key("0", false))).isNull();
+        CacheStatistics statistics = responseCache.statistics();
+        Assertions.assertThat(statistics.getHits()).isEqualTo(1);
+        Assertions.assertThat(statistics.getMisses()).isEqualTo(1);
+    }
+
+    private static ResponseBodyCache.Key key(String page, boolean gzip) {
+        return new ResponseBodyCache.Key("a-0", "/api/users/pages", "page=" + page + "&size=10", null, gzip);
+    }
+}
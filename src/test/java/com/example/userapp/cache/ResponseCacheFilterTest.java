@@ -0,0 +1,117 @@
+package com.example.userapp.cache;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class ResponseCacheFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ResponseBodyCache responseCache;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void whenNothingCommitted_then_serveStoredBodyUntilNextWrite() throws Exception {
+        String first = getUsers();
+        long hits = responseCache.statistics().getHits();
+        // bypasses the application, so no write generation is bumped
+        jdbcTemplate.update("INSERT INTO users (id, first_name, last_name, email, version) VALUES (NEXT VALUE FOR users_seq, ?, ?, ?, 0)",
+                "Hidden", "Row", "hidden.row@gmail.com");
+
+        Assertions.assertThat(getUsers()).isEqualTo(first).doesNotContain("hidden.row@gmail.com");
+        Assertions.assertThat(responseCache.statistics().getHits()).isEqualTo(hits + 1);
+
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Cache\",\"lastName\":\"Buster\",\"email\":\"cache.buster@gmail.com\"}"))
+                .andExpect(status().isCreated());
+
+        Assertions.assertThat(getUsers()).contains("hidden.row@gmail.com", "cache.buster@gmail.com");
+    }
+
+    @Test
+    public void whenAnotherInstanceCommits_then_stopServingStoredBody() throws Exception {
+        String first = getUsers();
+        jdbcTemplate.update("INSERT INTO users (id, first_name, last_name, email, version) VALUES (NEXT VALUE FOR users_seq, ?, ?, ?, 0)",
+                "Remote", "Writer", "remote.writer@gmail.com");
+        Assertions.assertThat(getUsers()).isEqualTo(first);
+
+        // what another instance's commit leaves behind: the same row, bumped
+        jdbcTemplate.update("MERGE INTO write_generations KEY (name) VALUES ('users', ?)", System.nanoTime());
+
+        Assertions.assertThat(getUsers()).contains("remote.writer@gmail.com");
+    }
+
+    @Test
+    public void whenPageCached_then_keepETagAndAnswerRevalidationWith304() throws Exception {
+        MvcResult miss = mockMvc.perform(get("/api/users/pages?page=0&size=3")).andExpect(status().isOk()).andReturn();
+        MvcResult hit = mockMvc.perform(get("/api/users/pages?page=0&size=3")).andExpect(status().isOk()).andReturn();
+        String etag = miss.getResponse().getHeader(HttpHeaders.ETAG);
+
+        Assertions.assertThat(etag).isNotNull();
+        Assertions.assertThat(hit.getResponse().getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+        Assertions.assertThat(hit.getResponse().getContentAsString()).isEqualTo(miss.getResponse().getContentAsString());
+        mockMvc.perform(get("/api/users/pages?page=0&size=3").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        // a different size is a different entry
+        Assertions.assertThat(mockMvc.perform(get("/api/users/pages?page=0&size=1")).andReturn().getResponse().getContentAsString())
+                .isNotEqualTo(miss.getResponse().getContentAsString());
+    }
+
+    @Test
+    public void whenClientAcceptsGzip_then_serveCompressedBytes() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            jdbcTemplate.update("INSERT INTO users (id, first_name, last_name, email, version) VALUES (NEXT VALUE FOR users_seq, ?, ?, ?, 0)",
+                    "Gzip", "Filler", "gzip.filler" + i + "@gmail.com");
+        }
+        responseCache.invalidateAll();
+        String plain = getUsers();
+
+        for (int i = 0; i < 2; i++) {
+            MvcResult gzipped = mockMvc.perform(get("/api/users").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andReturn();
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getResponse().getContentAsByteArray()))) {
+                Assertions.assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo(plain);
+            }
+        }
+    }
+
+    @Test
+    public void whenStreaming_then_bypassCache() throws Exception {
+        long misses = responseCache.statistics().getMisses();
+
+        mockMvc.perform(get("/api/users").accept(MediaType.APPLICATION_NDJSON)).andExpect(status().isOk());
+
+        Assertions.assertThat(responseCache.statistics().getMisses()).isEqualTo(misses);
+    }
+
+    private String getUsers() throws Exception {
+        return mockMvc.perform(get("/api/users")).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+    }
+}
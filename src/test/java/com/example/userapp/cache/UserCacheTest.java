@@ -0,0 +1,71 @@
+package com.example.userapp.cache;
+
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.payload.UserDto;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+class UserCacheTest {
+
+    private final UserCache userCache = new UserCache(2, Duration.ofMinutes(1));
+
+    @Test
+    public void whenUserChanged_then_nextReadLoadsFreshValue() {
+        userCache.get(1L, id -> user(id, "old@gmail.com"));
+        userCache.onUserChanged(UserChangedEvent.deleted(1L));
+
+        UserDto reloaded = userCache.get(1L, id -> user(id, "new@gmail.com"));
+
+        Assertions.assertThat(reloaded.getEmail()).isEqualTo("new@gmail.com");
+        CacheStatistics statistics = userCache.statistics();
+        Assertions.assertThat(statistics.getMisses()).isEqualTo(2);
+        Assertions.assertThat(statistics.getHits()).isZero();
+    }
+
+    @Test
+    public void whenInvalidatedDuringLoad_then_staleLoadIsNotKept() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<UserDto> staleRead = CompletableFuture.supplyAsync(() -> userCache.get(1L, id -> {
+            loading.countDown();
+            await(release);
+            return user(id, "old@gmail.com");
+        }));
+        loading.await(5, TimeUnit.SECONDS);
+
+        // the writer commits, then invalidates; the invalidation has to wait for the in-flight load
+        CompletableFuture<Void> invalidation = CompletableFuture.runAsync(() -> userCache.invalidate(1L));
+        release.countDown();
+        invalidation.get(5, TimeUnit.SECONDS);
+
+        Assertions.assertThat(staleRead.get(5, TimeUnit.SECONDS).getEmail()).isEqualTo("old@gmail.com");
+        Assertions.assertThat(userCache.getIfPresent(1L)).isNull();
+        Assertions.assertThat(userCache.get(1L, id -> user(id, "new@gmail.com")).getEmail()).isEqualTo("new@gmail.com");
+    }
+
+    @Test
+    public void whenLoaderThrows_then_nothingIsCached() {
+        Assertions.assertThatIllegalStateException()
+                .isThrownBy(() -> userCache.get(1L, id -> {
+                    throw new IllegalStateException("not found");
+                }));
+        Assertions.assertThat(userCache.getIfPresent(1L)).isNull();
+    }
+
+    private static UserDto user(long id, String email) {
+        return UserDto.builder().id(id).firstName("Ramesh").lastName("Silva").email(email).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
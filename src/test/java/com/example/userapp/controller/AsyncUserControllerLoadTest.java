@@ -0,0 +1,129 @@
+package com.example.userapp.controller;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Compares request throughput of the blocking and the async handlers when every SQL statement takes
+ * {@value #STATEMENT_DELAY_MS} ms. Tomcat gets fewer threads than the pool has connections, so the
+ * blocking endpoint is capped by servlet threads while the async one is capped by the pool.
+ * <p>
+ * Excluded from the default build; run with {@code ./mvnw test -Pload-test}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "app.async.enabled=true",
+        "server.tomcat.threads.max=4",
+        "server.tomcat.threads.min-spare=4",
+        "spring.datasource.hikari.maximum-pool-size=16",
+        "app.async.queue-capacity=1000"
+})
+class AsyncUserControllerLoadTest {
+
+    private static final long STATEMENT_DELAY_MS = 20;
+    private static final int REQUESTS = 320;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    @Test
+    public void whenDatabaseIsSlow_then_asyncHandlersServeMoreRequestsPerSecond() {
+        run("/api/users/pages?page=0&size=5");
+        run("/api/async/users/pages?page=0&size=5");
+
+        double blocking = run("/api/users/pages?page=0&size=5");
+        double async = run("/api/async/users/pages?page=0&size=5");
+
+        Assertions.assertThat(async)
+                .as("slow datasource (%d ms/statement): blocking %.1f req/s, async %.1f req/s",
+                        STATEMENT_DELAY_MS, blocking, async)
+                .isGreaterThan(blocking);
+    }
+
+    private double run(String path) {
+        long start = System.nanoTime();
+        List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>(REQUESTS);
+        for (int i = 0; i < REQUESTS; i++) {
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build();
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.discarding()));
+        }
+        for (CompletableFuture<HttpResponse<Void>> response : responses) {
+            Assertions.assertThat(response.join().statusCode()).isEqualTo(200);
+        }
+        return REQUESTS / ((System.nanoTime() - start) / 1e9);
+    }
+
+    @TestConfiguration
+    static class SlowDataSourceConfig {
+
+        @Bean
+        public static BeanPostProcessor slowDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource ? new SlowDataSource((DataSource) bean) : bean;
+                }
+            };
+        }
+    }
+
+    // holds the pooled connection for the whole delay, like a slow database would
+    static class SlowDataSource extends DelegatingDataSource {
+
+        SlowDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        return result instanceof PreparedStatement ? slow((PreparedStatement) result) : result;
+                    });
+        }
+
+        private static PreparedStatement slow(PreparedStatement statement) {
+            return (PreparedStatement) Proxy.newProxyInstance(SlowDataSource.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute")) {
+                            Thread.sleep(STATEMENT_DELAY_MS);
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, java.lang.reflect.Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+}
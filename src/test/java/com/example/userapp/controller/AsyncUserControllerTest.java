@@ -0,0 +1,105 @@
+package com.example.userapp.controller;
+
+import com.example.userapp.exception.ConcurrentUpdateException;
+import com.example.userapp.exception.PreconditionRequiredException;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.AsyncUserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.BDDMockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(controllers = AsyncUserController.class, properties = "app.async.enabled=true")
+class AsyncUserControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @MockBean
+    private AsyncUserService userService;
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final UserDto updatedUser = UserDto.builder().firstName("Ram").lastName("Jadhav").email("ram@gmail.com").build();
+
+    @Test
+    public void whenGetUser_thenReturnItsETag() throws Exception {
+        given(userService.getUserById(1L)).willReturn(CompletableFuture.completedFuture(
+                UserDto.builder().id(1L).firstName("Ram").lastName("Jadhav").email("ram@gmail.com").version(3L).build()));
+
+        perform(get("/api/async/users/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"3\""));
+    }
+
+    @Test
+    public void whenUpdateUserWithIfMatch_thenUpdateThatVersion() throws Exception {
+        given(userService.updateUser(argThat(user -> Long.valueOf(4L).equals(user.getVersion())), eq(1L)))
+                .willReturn(CompletableFuture.completedFuture(updated(5L)));
+
+        perform(update().header("If-Match", "W/\"4\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"5\""));
+    }
+
+    @Test
+    public void whenUpdateUserWithIfMatchAny_thenUpdateCurrentVersion() throws Exception {
+        given(userService.getCurrentVersion(1L)).willReturn(CompletableFuture.completedFuture(7L));
+        given(userService.updateUser(argThat(user -> Long.valueOf(7L).equals(user.getVersion())), eq(1L)))
+                .willReturn(CompletableFuture.completedFuture(updated(8L)));
+
+        perform(update().header("If-Match", "*"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"8\""));
+    }
+
+    @Test
+    public void whenUpdateUserWithStaleIfMatch_thenReturnPreconditionFailed() throws Exception {
+        given(userService.updateUser(any(UserDto.class), eq(1L)))
+                .willReturn(CompletableFuture.failedFuture(new ConcurrentUpdateException("user", 1L, 4L)));
+
+        perform(update().header("If-Match", "W/\"4\""))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(update().header("If-Match", "\"not-a-version\""))
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    public void whenUpdateUserWithoutVersion_thenReturnPreconditionRequired() throws Exception {
+        given(userService.updateUser(any(UserDto.class), eq(1L)))
+                .willReturn(CompletableFuture.failedFuture(new PreconditionRequiredException("version required")));
+
+        perform(update())
+                .andExpect(status().isPreconditionRequired());
+    }
+
+    private MockHttpServletRequestBuilder update() throws Exception {
+        return put("/api/async/users/{id}", 1L)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updatedUser));
+    }
+
+    // runs the handler, then dispatches its completed future like the container would
+    private ResultActions perform(RequestBuilder builder) throws Exception {
+        MvcResult started = mockMvc.perform(builder).andExpect(request().asyncStarted()).andReturn();
+        return mockMvc.perform(asyncDispatch(started));
+    }
+
+    private static UserDto updated(long version) {
+        return UserDto.builder().id(1L).firstName("Ram").lastName("Jadhav").email("ram@gmail.com").version(version).build();
+    }
+}
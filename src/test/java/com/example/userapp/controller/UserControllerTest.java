@@ -1,24 +1,46 @@
 package com.example.userapp.controller;
 
 import com.example.userapp.entity.User;
+import com.example.userapp.config.WebConfig;
+import com.example.userapp.exception.ConcurrentUpdateException;
+import com.example.userapp.exception.DuplicateEmailException;
+import com.example.userapp.exception.PreconditionRequiredException;
 import com.example.userapp.exception.ResourceNotFoundException;
+import com.example.userapp.payload.BatchCreateResponse;
+import com.example.userapp.payload.BatchItemResult;
+import com.example.userapp.payload.ImportRejection;
+import com.example.userapp.payload.ImportSummary;
+import com.example.userapp.payload.ScrollResponse;
 import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.UserImportService;
 import com.example.userapp.service.UserService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
 import java.util.ArrayList;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.function.Consumer;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.*;
@@ -27,13 +49,16 @@ import static org.mockito.BDDMockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 
 
-@WebMvcTest
+@WebMvcTest(UserController.class)
+@Import(WebConfig.class)
 class UserControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
     @MockBean
     private UserService userService;
+    @MockBean
+    private UserImportService importService;
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -62,6 +87,28 @@ class UserControllerTest {
 
     }
 
+    @Test
+    public void whenCreateUsersInBatch_thenReturnPerItemResults() throws Exception {
+        List<UserDto> userDtos = List.of(
+                UserDto.builder().firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build(),
+                UserDto.builder().firstName("T").lastName("Stark").email("tony").build());
+        BatchCreateResponse batchResponse = new BatchCreateResponse(2, 1, 1, List.of(
+                BatchItemResult.builder().index(0).status(BatchItemResult.Status.CREATED).user(userDtos.get(0)).build(),
+                BatchItemResult.builder().index(1).status(BatchItemResult.Status.REJECTED).user(userDtos.get(1))
+                        .errors(List.of("email: must be a well-formed email address")).build()));
+        given(userService.saveUsers(anyList())).willReturn(batchResponse);
+
+        ResultActions response = mockMvc.perform(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(userDtos)));
+
+        response.andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created", is(1)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.results[1].status", is("REJECTED")));
+    }
+
     @Test
     public void whenGetAllUsers_thenReturnUsersList() throws Exception {
         List<UserDto> listOfUsers = new ArrayList<>();
@@ -78,12 +125,35 @@ class UserControllerTest {
 
     }
 
+    @Test
+    public void whenStreamUsers_thenReturnNdjsonLines() throws Exception {
+        UserDto user1 = UserDto.builder().firstName("Ramesh").lastName("Fadatare").email("ramesh@gmail.com").build();
+        UserDto user2 = UserDto.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
+        willAnswer(invocation -> {
+            Consumer<UserDto> consumer = invocation.getArgument(0);
+            consumer.accept(user1);
+            consumer.accept(user2);
+            return null;
+        }).given(userService).streamAllUsers(any());
+
+        MvcResult result = mockMvc.perform(get("/api/users").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(objectMapper.writeValueAsString(user1) + "\n"
+                        + objectMapper.writeValueAsString(user2)));
+    }
+
     @Test
     public void whenGetUsersWithPage_then_returnPageOfUsers() throws Exception {
-        List<User> listOfUsers = new ArrayList<>();
-        listOfUsers.add(User.builder().firstName("Ramesh").lastName("Fadatare").email("ramesh@gmail.com").build());
-        listOfUsers.add(User.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build());
-        Page<User> pages = new PageImpl<>(listOfUsers, PageRequest.of(0, 1), listOfUsers.size());
+        List<UserDto> listOfUsers = new ArrayList<>();
+        listOfUsers.add(UserDto.builder().firstName("Ramesh").lastName("Fadatare").email("ramesh@gmail.com").build());
+        listOfUsers.add(UserDto.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build());
+        Page<UserDto> pages = new PageImpl<>(listOfUsers, PageRequest.of(0, 1), listOfUsers.size());
         given(userService.getUserWithPagination(0,2)).willReturn(pages);
 
         ResultActions response = mockMvc.perform(get("/api/users/pages?page=0&size=2"));
@@ -95,6 +165,72 @@ class UserControllerTest {
 
     }
 
+    @Test
+    public void whenScrollUsers_then_returnWindowWithNextCursor() throws Exception {
+        List<UserDto> listOfUsers = new ArrayList<>();
+        listOfUsers.add(UserDto.builder().id(1L).firstName("Ramesh").lastName("Fadatare").email("ramesh@gmail.com").build());
+        listOfUsers.add(UserDto.builder().id(2L).firstName("Tony").lastName("Stark").email("tony@gmail.com").build());
+        given(userService.scrollUsers(null, 2)).willReturn(new ScrollResponse<>(listOfUsers, 2, "next"));
+
+        ResultActions response = mockMvc.perform(get("/api/users/scroll?size=2"));
+
+        response.andExpect(status().isOk())
+                .andDo(print())
+                .andExpect(jsonPath("$.content.size()", is(listOfUsers.size())))
+                .andExpect(jsonPath("$.nextCursor", is("next")))
+                .andExpect(jsonPath("$.hasNext", is(true)));
+    }
+
+    @Test
+    public void whenCreateUserWithTakenEmail_thenReturnConflict() throws Exception {
+        UserDto userDto = UserDto.builder().firstName("Jayod").lastName("Jayasekara").email("jayod@gmail.com").build();
+        given(userService.saveUser(any(UserDto.class))).willThrow(new DuplicateEmailException("jayod@gmail.com"));
+
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(userDto)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void whenImportRawCsv_thenReturnSummary() throws Exception {
+        String csv = "firstName,lastName,email\nRamesh,Silva,ramesh@gmail.com\nT,Stark,tony\n";
+        given(importService.importCsv(any(InputStream.class))).willAnswer(invocation -> {
+            String body = new String(invocation.getArgument(0, InputStream.class).readAllBytes(), StandardCharsets.UTF_8);
+            Assertions.assertThat(body).isEqualTo(csv);
+            return new ImportSummary(2, 1, 1, List.of(new ImportRejection(3, List.of("email: must be a well-formed email address"))));
+        });
+
+        mockMvc.perform(post("/api/users/import").contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted", is(1)))
+                .andExpect(jsonPath("$.rejected", is(1)))
+                .andExpect(jsonPath("$.rejections[0].line", is(3)));
+    }
+
+    @Test
+    public void whenImportMultipartCsv_thenReturnSummary() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv",
+                "Ramesh,Silva,ramesh@gmail.com\n".getBytes(StandardCharsets.UTF_8));
+        given(importService.importCsv(any(InputStream.class))).willReturn(new ImportSummary(1, 1, 0, List.of()));
+
+        mockMvc.perform(multipart("/api/users/import").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows", is(1)))
+                .andExpect(jsonPath("$.accepted", is(1)));
+    }
+
+    @Test
+    public void whenMultipartUploadTooLarge_thenReturnPayloadTooLarge() throws Exception {
+        MockMultipartFile file = new MockMultipartFile("file", "users.csv", "text/csv",
+                "firstName,lastName,email\n".getBytes(StandardCharsets.UTF_8));
+        given(importService.importCsv(any(InputStream.class))).willThrow(new MaxUploadSizeExceededException(10));
+
+        mockMvc.perform(multipart("/api/users/import").file(file))
+                .andExpect(status().isPayloadTooLarge())
+                .andExpect(content().string(containsString("text/csv")));
+    }
+
     @Test
     public void whenGetUserById_thenReturnUserObject() throws Exception {
         long userId = 1L;
@@ -116,6 +252,26 @@ class UserControllerTest {
     }
 
 
+    @Test
+    public void whenGetUserByEmail_thenReturnUserObject() throws Exception {
+        UserDto userDto = UserDto.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+        given(userService.getUserByEmail("ramesh@gmail.com")).willReturn(userDto);
+
+        mockMvc.perform(get("/api/users/by-email").param("email", "ramesh@gmail.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(1)))
+                .andExpect(jsonPath("$.email", is("ramesh@gmail.com")));
+    }
+
+    @Test
+    public void whenGetUserByUnknownEmail_thenReturnNotFound() throws Exception {
+        given(userService.getUserByEmail("nobody@gmail.com"))
+                .willThrow(new ResourceNotFoundException("user", "email", "nobody@gmail.com"));
+
+        mockMvc.perform(get("/api/users/by-email").param("email", "nobody@gmail.com"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     public void whenGetUserByInvalidId_thenReturnEmpty() throws Exception {
         long userId = 100L;
@@ -138,6 +294,7 @@ class UserControllerTest {
                 .firstName("Ram")
                 .lastName("Jadhav")
                 .email("ram@gmail.com")
+                .version(0L)
                 .build();
         given(userService.getUserById(userId)).willReturn(savedUser);
         given(userService.updateUser(any(UserDto.class), eq(userId)))
@@ -154,13 +311,153 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.email", is(updatedUser.getEmail())));
     }
 
+    @Test
+    public void whenAcceptCbor_thenReturnCborEncodedUsers() throws Exception {
+        List<UserDto> listOfUsers = List.of(UserDto.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build());
+        given(userService.getAllUsers()).willReturn(listOfUsers);
+
+        byte[] body = mockMvc.perform(get("/api/users").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        UserDto[] decoded = new ObjectMapper(new CBORFactory()).readValue(body, UserDto[].class);
+        Assertions.assertThat(decoded).extracting(UserDto::getEmail).containsExactly("ramesh@gmail.com");
+    }
+
+    @Test
+    public void whenAcceptSmile_thenReturnSmileEncodedPage() throws Exception {
+        List<UserDto> listOfUsers = List.of(UserDto.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build());
+        given(userService.getUserWithPagination(0, 1)).willReturn(new PageImpl<>(listOfUsers, PageRequest.of(0, 1), 1));
+
+        byte[] body = mockMvc.perform(get("/api/users/pages?page=0&size=1").accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Assertions.assertThat(new ObjectMapper(new SmileFactory()).readTree(body).at("/content/0/email").asText())
+                .isEqualTo("ramesh@gmail.com");
+    }
+
+    @Test
+    public void whenGetUserWithCurrentETag_thenReturnNotModified() throws Exception {
+        UserDto userDto = UserDto.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").version(3L).build();
+        given(userService.getUserById(1L)).willReturn(userDto);
+
+        mockMvc.perform(get("/api/users/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"3\""));
+
+        mockMvc.perform(get("/api/users/{id}", 1L).header("If-None-Match", "W/\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // the representation does not matter, so neither does the format the tag came from
+        mockMvc.perform(get("/api/users/{id}", 1L).header("If-None-Match", "W/\"3\"")
+                        .accept(MediaType.valueOf("application/cbor")))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(get("/api/users/{id}", 1L).header("If-None-Match", "W/\"2\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void whenGetPagesUnchangedSinceETag_thenReturnNotModified() throws Exception {
+        UserDto user = UserDto.builder().id(1L).firstName("Ram").lastName("Jadhav").email("ram@gmail.com").version(0L).build();
+        given(userService.getUserWithPagination(0, 2)).willReturn(new PageImpl<>(List.of(user), PageRequest.of(0, 2), 1));
+
+        String etag = mockMvc.perform(get("/api/users/pages?page=0&size=2"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/users/pages?page=0&size=2").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        UserDto updated = UserDto.builder().id(1L).firstName("Ram").lastName("Jadhav").email("ram@gmail.com").version(1L).build();
+        given(userService.getUserWithPagination(0, 2)).willReturn(new PageImpl<>(List.of(updated), PageRequest.of(0, 2), 1));
+        mockMvc.perform(get("/api/users/pages?page=0&size=2").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+
+        // another user was added behind this page
+        given(userService.getUserWithPagination(0, 2)).willReturn(new PageImpl<>(List.of(user), PageRequest.of(0, 2), 2));
+        mockMvc.perform(get("/api/users/pages?page=0&size=2").header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void whenUpdateUserWithIfMatch_thenUpdateThatVersion() throws Exception {
+        UserDto updatedUser = UserDto.builder().firstName("Ram").lastName("Jadhav").email("ram@gmail.com").build();
+        given(userService.updateUser(argThat(user -> Long.valueOf(4L).equals(user.getVersion())), eq(1L)))
+                .willReturn(UserDto.builder().id(1L).firstName("Ram").lastName("Jadhav").email("ram@gmail.com").version(5L).build());
+
+        mockMvc.perform(put("/api/users/{id}", 1L)
+                        .header("If-Match", "W/\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"5\""));
+
+        // a strong tag from before tags became weak still names the same version
+        mockMvc.perform(put("/api/users/{id}", 1L)
+                        .header("If-Match", "\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"5\""));
+    }
+
+    @Test
+    public void whenUpdateUserWithoutVersion_thenReturnPreconditionRequired() throws Exception {
+        UserDto updatedUser = UserDto.builder().firstName("Ram").lastName("Jadhav").email("ram@gmail.com").build();
+        given(userService.updateUser(any(UserDto.class), eq(1L))).willThrow(new PreconditionRequiredException("version required"));
+
+        mockMvc.perform(put("/api/users/{id}", 1L)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isPreconditionRequired());
+    }
+
+    @Test
+    public void whenUpdateUserWithIfMatchAny_thenUpdateCurrentVersion() throws Exception {
+        UserDto updatedUser = UserDto.builder().firstName("Ram").lastName("Jadhav").email("ram@gmail.com").build();
+        given(userService.getCurrentVersion(1L)).willReturn(7L);
+        given(userService.updateUser(argThat(user -> Long.valueOf(7L).equals(user.getVersion())), eq(1L)))
+                .willReturn(UserDto.builder().id(1L).firstName("Ram").lastName("Jadhav").email("ram@gmail.com").version(8L).build());
+
+        mockMvc.perform(put("/api/users/{id}", 1L)
+                        .header("If-Match", "*")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "W/\"8\""));
+    }
+
+    @Test
+    public void whenUpdateUserWithStaleIfMatch_thenReturnPreconditionFailed() throws Exception {
+        UserDto updatedUser = UserDto.builder().firstName("Ram").lastName("Jadhav").email("ram@gmail.com").build();
+        given(userService.updateUser(any(UserDto.class), eq(1L))).willThrow(new ConcurrentUpdateException("user", 1L, 4L));
+
+        mockMvc.perform(put("/api/users/{id}", 1L)
+                        .header("If-Match", "\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(put("/api/users/{id}", 1L)
+                        .header("If-Match", "W/\"4\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     public void whenSearchUsersBuyKeyword_then_ReturnsListOfUsers() throws Exception {
         long userId = 1L;
         String q = "key";
-        List<User> listOfUsers = new ArrayList<>();
-        listOfUsers.add(User.builder().firstName("key").lastName("Silva").email("silva@gmail.com").build());
-        listOfUsers.add(User.builder().firstName("Tony").lastName("key").email("tony@gmail.com").build());
+        List<UserDto> listOfUsers = new ArrayList<>();
+        listOfUsers.add(UserDto.builder().firstName("key").lastName("Silva").email("silva@gmail.com").build());
+        listOfUsers.add(UserDto.builder().firstName("Tony").lastName("key").email("tony@gmail.com").build());
         given(userService.searchUser(q)).willReturn(listOfUsers);
 
         ResultActions response = mockMvc.perform(get("/api/users/search?q=key"));
@@ -174,10 +471,10 @@ class UserControllerTest {
     @Test
     public void when_searchWithPage_then_ReturnPageOfUsers() throws Exception {
         String q = "key";
-        List<User> listOfUsers = new ArrayList<>();
-        listOfUsers.add(User.builder().firstName("key").lastName("Silva").email("silva@gmail.com").build());
-        listOfUsers.add(User.builder().firstName("Tony").lastName("key").email("tony@gmail.com").build());
-        Page<User> pages = new PageImpl<>(listOfUsers, PageRequest.of(0,2), listOfUsers.size());
+        List<UserDto> listOfUsers = new ArrayList<>();
+        listOfUsers.add(UserDto.builder().firstName("key").lastName("Silva").email("silva@gmail.com").build());
+        listOfUsers.add(UserDto.builder().firstName("Tony").lastName("key").email("tony@gmail.com").build());
+        Page<UserDto> pages = new PageImpl<>(listOfUsers, PageRequest.of(0,2), listOfUsers.size());
         given(userService.searchWithPagination(q,PageRequest.of(0, 2))).willReturn(pages);
 
         ResultActions response = mockMvc.perform(get("/api/users/search/pages?q=key&page=0&size=2"));
@@ -189,6 +486,43 @@ class UserControllerTest {
     }
 
 
+    @Test
+    public void when_searchWithApproximateCount_then_ReturnEstimatedTotal() throws Exception {
+        List<UserDto> listOfUsers = List.of(UserDto.builder().id(1L).firstName("key").lastName("Silva").email("silva@gmail.com").build());
+        given(userService.searchWithApproximateCount("key", PageRequest.of(0, 1)))
+                .willReturn(new PageImpl<>(listOfUsers, PageRequest.of(0, 1), 25));
+
+        mockMvc.perform(get("/api/users/search/pages?q=key&page=0&size=1&approximate=true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.size()", is(1)))
+                .andExpect(jsonPath("$.totalElements", is(25)));
+    }
+
+    @Test
+    public void when_searchSlice_then_ReturnSliceWithoutTotal() throws Exception {
+        List<UserDto> listOfUsers = List.of(UserDto.builder().id(1L).firstName("key").lastName("Silva").email("silva@gmail.com").build());
+        given(userService.searchSlice("key", PageRequest.of(0, 1)))
+                .willReturn(new SliceImpl<>(listOfUsers, PageRequest.of(0, 1), true));
+
+        mockMvc.perform(get("/api/users/search/slice?q=key&page=0&size=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.content.size()", is(1)))
+                .andExpect(jsonPath("$.last", is(false)))
+                .andExpect(jsonPath("$.totalElements").doesNotExist());
+    }
+
+    @Test
+    public void whenAutocomplete_thenReturnSuggestions() throws Exception {
+        List<UserDto> listOfUsers = new ArrayList<>();
+        listOfUsers.add(UserDto.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build());
+        given(userService.autocomplete("sil", 5)).willReturn(listOfUsers);
+
+        mockMvc.perform(get("/api/users/autocomplete?prefix=sil&limit=5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.size()", is(1)))
+                .andExpect(jsonPath("$[0].lastName", is("Silva")));
+    }
+
     @Test
     public void whenDeleteUser_thenReturnOk() throws Exception {
         long userId = 1L;
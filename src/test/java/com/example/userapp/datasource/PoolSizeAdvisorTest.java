@@ -0,0 +1,152 @@
+package com.example.userapp.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PoolSizeAdvisorTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+    private final List<Connection> held = new ArrayList<>();
+    private HikariDataSource pool;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new HikariDataSource();
+        pool.setJdbcUrl("jdbc:h2:mem:advised");
+        pool.setUsername("sa");
+        pool.setPoolName("advised");
+        pool.setMaximumPoolSize(4);
+        pool.setMinimumIdle(4);
+        pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        for (Connection connection : held) {
+            connection.close();
+        }
+        pool.close();
+    }
+
+    @Test
+    public void whenPoolIsMostlyIdle_then_recommendSmallerPoolWithoutResizing() throws Exception {
+        pool.setMinimumIdle(1);
+        PoolSizeAdvisor advisor = advisor(3, Duration.ZERO, false);
+        hold(1);
+
+        advisor.sample();
+        advisor.sample();
+
+        PoolSizeRecommendation recommendation = advisor.recommendation();
+        Assertions.assertThat(recommendation.getPoolName()).isEqualTo("advised");
+        Assertions.assertThat(recommendation.getSamples()).isEqualTo(2);
+        Assertions.assertThat(recommendation.getPeakActive()).isEqualTo(1);
+        Assertions.assertThat(recommendation.getCurrentSize()).isEqualTo(4);
+        // ceil(1 * 1.25) is below the lower bound
+        Assertions.assertThat(recommendation.getRecommendedSize()).isEqualTo(2);
+        Assertions.assertThat(pool.getMaximumPoolSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void whenFixedSizePoolIsIdle_then_neverGoBelowItsMinimumIdle() throws Exception {
+        PoolSizeAdvisor advisor = advisor(1, Duration.ZERO, true);
+        hold(1);
+
+        advisor.sample();
+        advisor.sample();
+
+        PoolSizeRecommendation recommendation = advisor.recommendation();
+        Assertions.assertThat(recommendation.getMinSize()).isEqualTo(4);
+        Assertions.assertThat(recommendation.getRecommendedSize()).isEqualTo(4);
+        Assertions.assertThat(recommendation.getResizes()).isZero();
+        Assertions.assertThat(pool.getMaximumPoolSize()).isEqualTo(4);
+    }
+
+    @Test
+    public void whenPoolIsIdle_then_shrinkOncePerShrinkInterval() throws Exception {
+        pool.setMinimumIdle(1);
+        hold(1);
+        PoolSizeAdvisor patient = advisor(1, Duration.ofHours(1), true);
+
+        patient.sample();
+        patient.sample();
+
+        Assertions.assertThat(patient.recommendation().getRecommendedSize()).isEqualTo(2);
+        Assertions.assertThat(pool.getMaximumPoolSize()).isEqualTo(4);
+
+        PoolSizeAdvisor eager = advisor(1, Duration.ZERO, true);
+        eager.sample();
+
+        Assertions.assertThat(pool.getMaximumPoolSize()).isEqualTo(2);
+        Assertions.assertThat(pool.getMinimumIdle()).isEqualTo(1);
+        Assertions.assertThat(eager.recommendation().getResizes()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenThreadsWaitForConnections_then_growPoolLiveWithinBounds() throws Exception {
+        // growing does not wait for a full window
+        PoolSizeAdvisor advisor = advisor(30, Duration.ofHours(1), true);
+        hold(4);
+        List<CompletableFuture<Connection>> waiting = List.of(
+                CompletableFuture.supplyAsync(this::connect), CompletableFuture.supplyAsync(this::connect));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pool.getHikariPoolMXBean().getThreadsAwaitingConnection() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        PoolSizeRecommendation before = advisor.recommendation();
+        advisor.sample();
+
+        Assertions.assertThat(before.getSamples()).isZero();
+        Assertions.assertThat(before.getRecommendedSize()).isEqualTo(4);
+        // demand 4 + 2 with 25% headroom is 8, capped at max-size, in a single step
+        Assertions.assertThat(pool.getMaximumPoolSize()).isEqualTo(6);
+        Assertions.assertThat(pool.getMinimumIdle()).isEqualTo(6);
+        for (CompletableFuture<Connection> connection : waiting) {
+            held.add(connection.get(5, TimeUnit.SECONDS));
+        }
+        PoolSizeRecommendation after = advisor.recommendation();
+        Assertions.assertThat(after.getResizes()).isEqualTo(1);
+        Assertions.assertThat(after.getSamples()).isZero();
+    }
+
+    @SuppressWarnings("unchecked")
+    private PoolSizeAdvisor advisor(int window, Duration shrinkInterval, boolean apply) {
+        ObjectProvider<HikariDataSource> provider = mock(ObjectProvider.class);
+        when(provider.getIfUnique()).thenReturn(pool);
+        ObjectProvider<MeterRegistry> registryProvider = mock(ObjectProvider.class);
+        when(registryProvider.getIfAvailable()).thenReturn(registry);
+        return new PoolSizeAdvisor(provider, registryProvider, window, shrinkInterval, Duration.ofMillis(5), 1.25, 2, 6, apply, true);
+    }
+
+    private void hold(int connections) throws Exception {
+        for (int i = 0; i < connections; i++) {
+            held.add(pool.getConnection());
+        }
+    }
+
+    private Connection connect() {
+        try {
+            return pool.getConnection();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
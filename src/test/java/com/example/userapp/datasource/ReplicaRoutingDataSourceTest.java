@@ -0,0 +1,106 @@
+package com.example.userapp.datasource;
+
+import com.example.userapp.cache.ResponseBodyCache;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.UserService;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs against two in-memory H2 databases: the usual test database as primary and a "replica" that
+ * only holds a marker row, so every read shows which database served it.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.routing.enabled=true",
+        "app.datasource.routing.sticky-window=1m",
+        "app.datasource.routing.replicas[0].url=jdbc:h2:mem:replica;DB_CLOSE_DELAY=-1",
+        "app.datasource.routing.replicas[0].username=sa",
+        "app.datasource.routing.replicas[0].password=password",
+        "app.search.index.enabled=false"
+})
+@AutoConfigureMockMvc
+class ReplicaRoutingDataSourceTest {
+
+    private static final String REPLICA_EMAIL = "replica@gmail.com";
+
+    @Autowired
+    private ReplicaRoutingDataSource routingDataSource;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ResponseBodyCache responseCache;
+
+    @BeforeEach
+    public void setUp() {
+        JdbcTemplate replica = new JdbcTemplate((DataSource) routingDataSource.getResolvedDataSources().get(0));
+        replica.execute("CREATE TABLE IF NOT EXISTS users (id BIGINT PRIMARY KEY, email VARCHAR(255), " +
+                "first_name VARCHAR(255), last_name VARCHAR(255), version BIGINT)");
+        replica.update("MERGE INTO users KEY (id) VALUES (?, ?, ?, ?, ?)", 1_000_000L, REPLICA_EMAIL, "Replica", "Row", 0L);
+    }
+
+    @Test
+    public void whenReadOnlyTransaction_then_readFromReplica() {
+        Assertions.assertThat(userService.searchUser("replica")).extracting(UserDto::getEmail).containsExactly(REPLICA_EMAIL);
+        Assertions.assertThat(DataSourceRouting.onPrimary(() -> userService.searchUser("replica"))).isEmpty();
+    }
+
+    @Test
+    public void whenListReadFromReplica_then_serveButNeverStoreBody() throws Exception {
+        responseCache.invalidateAll();
+        long hits = responseCache.statistics().getHits();
+
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertThat(mockMvc.perform(get("/api/users")).andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString()).contains(REPLICA_EMAIL);
+        }
+
+        Assertions.assertThat(responseCache.nativeCache().estimatedSize()).isZero();
+        Assertions.assertThat(responseCache.statistics().getHits()).isEqualTo(hits);
+    }
+
+    @Test
+    public void whenWriting_then_writeToPrimaryAndStickClientToIt() throws Exception {
+        MvcResult created = mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Sticky\",\"lastName\":\"Writer\",\"email\":\"sticky@gmail.com\"}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        Cookie sticky = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+        Assertions.assertThat(sticky).isNotNull();
+
+        String withCookie = mockMvc.perform(get("/api/users/search").param("q", "sticky").cookie(sticky))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+        String withoutCookie = mockMvc.perform(get("/api/users/search").param("q", "sticky"))
+                .andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+
+        Assertions.assertThat(withCookie).contains("sticky@gmail.com");
+        // the replica is never written to in this test, so it stands in for one that has not caught up
+        Assertions.assertThat(withoutCookie).isEqualTo("[]");
+    }
+
+    @Test
+    public void whenLoadingIdCache_then_readFromPrimary() {
+        Assertions.assertThatThrownBy(() -> userService.getUserById(1_000_000L))
+                .hasMessageContaining("not found");
+    }
+}
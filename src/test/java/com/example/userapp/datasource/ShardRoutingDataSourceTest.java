@@ -0,0 +1,266 @@
+package com.example.userapp.datasource;
+
+import com.example.userapp.exception.DuplicateEmailException;
+import com.example.userapp.payload.BatchCreateResponse;
+import com.example.userapp.payload.ScrollResponse;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.search.UserSearchIndex;
+import com.example.userapp.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Runs against three in-memory H2 shards: the usual test database as shard 0 and two more that get
+ * their users table from {@code shard-schema.sql}.
+ */
+@SpringBootTest(properties = {
+        "app.datasource.sharding.enabled=true",
+        "app.datasource.sharding.shards[0].url=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:shard-schema.sql'",
+        "app.datasource.sharding.shards[0].username=sa",
+        "app.datasource.sharding.shards[1].url=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1;INIT=RUNSCRIPT FROM 'classpath:shard-schema.sql'",
+        "app.datasource.sharding.shards[1].username=sa",
+        "app.users.batch.chunk-size=2",
+        "spring.datasource.hikari.auto-commit=false",
+        "spring.datasource.hikari.connection-timeout=7000",
+        "spring.jpa.properties.hibernate.connection.provider_disables_autocommit=true"
+})
+class ShardRoutingDataSourceTest {
+
+    @Autowired
+    private ShardRoutingDataSource routingDataSource;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserSearchIndex searchIndex;
+
+    @Test
+    public void whenBuildingShardPools_then_copyPrimaryPoolSettings() throws Exception {
+        for (Object shard : routingDataSource.getResolvedDataSources().values()) {
+            HikariDataSource pool = (HikariDataSource) shard;
+            Assertions.assertThat(pool.isAutoCommit()).as(pool.getPoolName()).isFalse();
+            Assertions.assertThat(pool.getConnectionTimeout()).as(pool.getPoolName()).isEqualTo(7000);
+            try (Connection connection = pool.getConnection()) {
+                Assertions.assertThat(connection.getAutoCommit()).as(pool.getPoolName()).isFalse();
+            }
+        }
+    }
+
+    @Test
+    public void whenShardTransactionFails_then_rollBackAllItsStatements() {
+        long before = IntStream.range(0, routingDataSource.size()).mapToLong(shard -> count(shard, "1 = 1")).sum();
+
+        // both rows of the chunk go to one shard, where the second is too long for its column: the chunk
+        // transaction must roll back the first row too before the rows are retried one by one
+        UserDto tooLong = user("rollback", 1);
+        tooLong.setFirstName("x".repeat(300));
+        BatchCreateResponse response = userService.saveUsers(List.of(user("rollback", 0), tooLong));
+
+        Assertions.assertThat(response.getCreated()).isEqualTo(1);
+        Assertions.assertThat(IntStream.range(0, routingDataSource.size()).mapToLong(shard -> count(shard, "1 = 1")).sum())
+                .isEqualTo(before + 1);
+        // the claims of the rolled back chunk are released along with it
+        Assertions.assertThat(claims("rollback1@gmail.com")).isZero();
+    }
+
+    @Test
+    public void whenCreatingUsers_then_spreadThemRoundRobinWithShardInId() {
+        List<UserDto> created = create("spread", 6);
+
+        Assertions.assertThat(created).extracting(user -> ShardRoutingDataSource.shardOf(user.getId()))
+                .containsOnly(0, 1, 2)
+                .hasSize(6);
+        for (UserDto user : created) {
+            int shard = ShardRoutingDataSource.shardOf(user.getId());
+            for (int other = 0; other < routingDataSource.size(); other++) {
+                Assertions.assertThat(count(other, "id = " + user.getId())).isEqualTo(other == shard ? 1 : 0);
+            }
+        }
+    }
+
+    @Test
+    public void whenSingleUserOperation_then_touchOnlyItsShard() {
+        UserDto user = create("single", 3).stream()
+                .filter(candidate -> ShardRoutingDataSource.shardOf(candidate.getId()) == 2)
+                .findFirst().orElseThrow();
+        // a row with the same id elsewhere would be read, updated or deleted by a broadcast
+        write(1, "INSERT INTO users (id, first_name, last_name, email, version) VALUES (?, ?, ?, ?, 0)",
+                user.getId(), "Decoy", "Row", "decoy" + user.getId() + "@gmail.com");
+
+        Assertions.assertThat(userService.getUserById(user.getId()).getEmail()).isEqualTo(user.getEmail());
+
+        UserDto renamed = userService.updateUser(UserDto.builder().firstName("Renamed").lastName("User").email(user.getEmail())
+                .version(user.getVersion()).build(), user.getId());
+        Assertions.assertThat(renamed.getVersion()).isEqualTo(user.getVersion() + 1);
+        Assertions.assertThat(jdbc(2).queryForObject("SELECT first_name FROM users WHERE id = ?", String.class, user.getId()))
+                .isEqualTo("Renamed");
+
+        userService.deleteUserById(user.getId());
+        Assertions.assertThat(count(2, "id = " + user.getId())).isZero();
+        Assertions.assertThat(jdbc(1).queryForObject("SELECT first_name FROM users WHERE id = ?", String.class, user.getId()))
+                .isEqualTo("Decoy");
+        write(1, "DELETE FROM users WHERE id = ?", user.getId());
+    }
+
+    @Test
+    public void whenReadingMany_then_mergeAllShardsInIdOrder() {
+        List<UserDto> created = create("gather", 7);
+        List<Long> ids = created.stream().map(UserDto::getId).sorted().toList();
+
+        Assertions.assertThat(userService.getAllUsers()).extracting(UserDto::getId)
+                .containsAll(ids)
+                .isSortedAccordingTo(Comparator.naturalOrder());
+
+        Page<UserDto> page = userService.searchWithPagination("gather", PageRequest.of(1, 3));
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(7);
+        Assertions.assertThat(page.getContent()).extracting(UserDto::getId).containsExactlyElementsOf(ids.subList(3, 6));
+
+        Slice<UserDto> last = userService.searchSlice("gather", PageRequest.of(2, 3));
+        Assertions.assertThat(last.getContent()).extracting(UserDto::getId).containsExactly(ids.get(6));
+        Assertions.assertThat(last.hasNext()).isFalse();
+        Assertions.assertThat(userService.searchSlice("gather", PageRequest.of(1, 3)).hasNext()).isTrue();
+
+        List<Long> scrolled = new ArrayList<>();
+        String cursor = null;
+        do {
+            ScrollResponse<UserDto> window = userService.scrollSearch("gather", cursor, 2);
+            window.getContent().forEach(user -> scrolled.add(user.getId()));
+            cursor = window.getNextCursor();
+        } while (cursor != null);
+        Assertions.assertThat(scrolled).containsExactlyElementsOf(ids);
+
+        Page<UserDto> all = userService.getUserWithPagination(0, 1000);
+        Assertions.assertThat(all.getTotalElements()).isEqualTo(IntStream.range(0, routingDataSource.size()).mapToLong(shard -> count(shard, "1 = 1")).sum());
+        Assertions.assertThat(userService.getUserByEmail(created.get(5).getEmail()).getId()).isEqualTo(created.get(5).getId());
+    }
+
+    @Test
+    public void whenEmailTakenOnAnotherShard_then_rejectDuplicate() {
+        UserDto first = userService.saveUser(user("taken", 0));
+
+        Assertions.assertThatExceptionOfType(DuplicateEmailException.class)
+                .isThrownBy(() -> userService.saveUser(user("taken", 0)));
+        Assertions.assertThatExceptionOfType(DuplicateEmailException.class)
+                .isThrownBy(() -> userService.saveUser(user("taken", 0)));
+        Assertions.assertThat(IntStream.range(0, routingDataSource.size())
+                .mapToLong(shard -> count(shard, "email = '" + first.getEmail() + "'")).sum()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenSameEmailCreatedConcurrently_then_storeItOnOneShardOnly() throws Exception {
+        int threads = 6;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        userService.saveUser(user("racing", 0));
+                        return true;
+                    } catch (DuplicateEmailException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            long created = 0;
+            for (Future<Boolean> result : results) {
+                created += result.get(30, TimeUnit.SECONDS) ? 1 : 0;
+            }
+
+            Assertions.assertThat(created).isEqualTo(1);
+            Assertions.assertThat(IntStream.range(0, routingDataSource.size())
+                    .mapToLong(shard -> count(shard, "email = 'racing0@gmail.com'")).sum()).isEqualTo(1);
+            Assertions.assertThat(claims("racing0@gmail.com")).isEqualTo(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void whenEmailChangesOrUserIsDeleted_then_moveOrReleaseItsClaim() {
+        List<UserDto> users = create("claim", 2);
+        UserDto first = users.get(0);
+        UserDto second = users.get(1);
+        Assertions.assertThat(ShardRoutingDataSource.shardOf(first.getId())).isNotEqualTo(ShardRoutingDataSource.shardOf(second.getId()));
+
+        // the other user's shard has no row with this email, only the claim knows it is taken
+        Assertions.assertThatExceptionOfType(DuplicateEmailException.class).isThrownBy(() -> userService.updateUser(
+                UserDto.builder().firstName("claim").lastName("Sharded").email(second.getEmail()).version(first.getVersion()).build(),
+                first.getId()));
+
+        userService.updateUser(UserDto.builder().firstName("claim").lastName("Sharded").email("claim.moved@gmail.com")
+                .version(first.getVersion()).build(), first.getId());
+        Assertions.assertThat(claims(first.getEmail())).isZero();
+        Assertions.assertThat(claims("claim.moved@gmail.com")).isEqualTo(1);
+
+        userService.deleteUserById(second.getId());
+        Assertions.assertThat(claims(second.getEmail())).isZero();
+        Assertions.assertThat(userService.saveUser(user("claim", 1)).getEmail()).isEqualTo(second.getEmail());
+    }
+
+    @Test
+    public void whenBatchCreating_then_storeEachChunkOnOneShardAndIndexEverything() {
+        List<UserDto> users = IntStream.range(0, 6).mapToObj(i -> user("batch", i)).toList();
+
+        BatchCreateResponse response = userService.saveUsers(users);
+
+        Assertions.assertThat(response.getCreated()).isEqualTo(6);
+        Assertions.assertThat(response.getResults()).extracting(result -> ShardRoutingDataSource.shardOf(result.getUser().getId()))
+                .containsOnly(0, 1, 2);
+        searchIndex.rebuild();
+        Assertions.assertThat(searchIndex.verify().isConsistent()).isTrue();
+        Assertions.assertThat(searchIndex.search("batch")).hasSize(6);
+    }
+
+    private List<UserDto> create(String name, int users) {
+        return IntStream.range(0, users).mapToObj(i -> userService.saveUser(user(name, i))).toList();
+    }
+
+    private static UserDto user(String name, int n) {
+        return UserDto.builder().firstName(name).lastName("Sharded").email(name + n + "@gmail.com").build();
+    }
+
+    private long claims(String email) {
+        return jdbc(0).queryForObject("SELECT COUNT(*) FROM user_emails WHERE email = ?", Long.class, email);
+    }
+
+    private long count(int shard, String where) {
+        return jdbc(shard).queryForObject("SELECT COUNT(*) FROM users WHERE " + where, Long.class);
+    }
+
+    // the pools do not auto-commit, like the ones Hibernate runs on
+    private void write(int shard, String sql, Object... args) {
+        DataSource dataSource = (DataSource) routingDataSource.getResolvedDataSources().get(shard);
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource))
+                .executeWithoutResult(status -> new JdbcTemplate(dataSource).update(sql, args));
+    }
+
+    private JdbcTemplate jdbc(int shard) {
+        return new JdbcTemplate((DataSource) routingDataSource.getResolvedDataSources().get(shard));
+    }
+}
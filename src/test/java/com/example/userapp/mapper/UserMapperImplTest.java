@@ -0,0 +1,41 @@
+package com.example.userapp.mapper;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.payload.UserDto;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class UserMapperImplTest {
+
+    private final UserMapper userMapper = new UserMapperImpl();
+
+    @Test
+    public void whenMapEntity_then_copyEveryDtoField() {
+        User user = User.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+
+        UserDto userDto = userMapper.toDto(user);
+
+        Assertions.assertThat(userDto.getId()).isEqualTo(1L);
+        Assertions.assertThat(userDto.getFirstName()).isEqualTo("Ramesh");
+        Assertions.assertThat(userDto.getLastName()).isEqualTo("Silva");
+        Assertions.assertThat(userDto.getEmail()).isEqualTo("ramesh@gmail.com");
+    }
+
+    @Test
+    public void whenMapDto_then_returnNewEntityWithoutId() {
+        UserDto userDto = UserDto.builder().id(7L).firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
+
+        User user = userMapper.toEntity(userDto);
+
+        Assertions.assertThat(user.getId()).isNull();
+        Assertions.assertThat(user.getFirstName()).isEqualTo("Tony");
+        Assertions.assertThat(user.getLastName()).isEqualTo("Stark");
+        Assertions.assertThat(user.getEmail()).isEqualTo("tony@gmail.com");
+    }
+
+    @Test
+    public void whenMapNull_then_returnNull() {
+        Assertions.assertThat(userMapper.toDto(null)).isNull();
+        Assertions.assertThat(userMapper.toEntity(null)).isNull();
+    }
+}
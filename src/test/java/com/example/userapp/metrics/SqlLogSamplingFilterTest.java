@@ -0,0 +1,37 @@
+package com.example.userapp.metrics;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.core.spi.FilterReply;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class SqlLogSamplingFilterTest {
+
+    @Test
+    public void whenSampleRateIsSet_then_letOneInRateThrough() {
+        SqlLogSamplingFilter filter = new SqlLogSamplingFilter();
+        filter.setSampleRate(10);
+
+        List<Integer> passed = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            if (filter.decide(new LoggingEvent()) == FilterReply.NEUTRAL) {
+                passed.add(i);
+            }
+        }
+
+        Assertions.assertThat(passed).containsExactly(0, 10, 20, 30, 40, 50, 60, 70, 80, 90);
+    }
+
+    @Test
+    public void whenSampleRateBelowOne_then_letEveryEventThrough() {
+        SqlLogSamplingFilter filter = new SqlLogSamplingFilter();
+        filter.setSampleRate(0);
+
+        for (int i = 0; i < 5; i++) {
+            Assertions.assertThat(filter.decide(new LoggingEvent())).isEqualTo(FilterReply.NEUTRAL);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.userapp.metrics;
+
+import org.assertj.core.api.Assertions;
+
+/**
+ * Statement-count assertions for tests running Hibernate on the test thread. Start a counter with
+ * {@link SqlStatementCounter#start()} around the code under test; each assertion checks what ran since
+ * the previous one.
+ */
+public final class SqlStatementAssertions {
+
+    private SqlStatementAssertions() {
+    }
+
+    public static void assertStatementCount(int expected) {
+        SqlStatementCounter counter = current();
+        Assertions.assertThat(counter.statementCount())
+                .as("SQL statements issued: %s", counter.statements())
+                .isEqualTo(expected);
+        counter.reset();
+    }
+
+    /**
+     * Fails when one SELECT ran {@code times} times or more since the previous assertion.
+     */
+    public static void assertNoRepeatedSelects(int times) {
+        SqlStatementCounter counter = current();
+        Assertions.assertThat(counter.repeatedSelects(times)).as("repeated SELECTs, possible N+1").isEmpty();
+        counter.reset();
+    }
+
+    private static SqlStatementCounter current() {
+        SqlStatementCounter counter = SqlStatementCounter.current();
+        Assertions.assertThat(counter).as("no SqlStatementCounter started on this thread").isNotNull();
+        return counter;
+    }
+}
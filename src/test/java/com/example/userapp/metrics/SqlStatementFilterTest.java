@@ -0,0 +1,145 @@
+package com.example.userapp.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.time.Duration;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {"app.sql.slow-query.threshold=0ms", "app.async.enabled=true"})
+@AutoConfigureMockMvc
+class SqlStatementFilterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private SlowQueryLog slowQueryLog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    public void whenCallingUserEndpoints_then_countStatementsPerRequest() throws Exception {
+        long id = objectMapper.readTree(mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Counted\",\"lastName\":\"Request\",\"email\":\"counted.request@gmail.com\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString()).get("id").asLong();
+
+        // the email filter rules out a duplicate, so the update is a single bulk UPDATE
+        SqlStatementCounter update = counterOf(put("/api/users/" + id)
+                .header("If-Match", "W/\"0\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"firstName\":\"Counted\",\"lastName\":\"Again\",\"email\":\"counted.again@gmail.com\"}"));
+        Assertions.assertThat(update.statementCount()).as("%s", update.statements()).isEqualTo(1);
+        Assertions.assertThat(update.statements().get(0)).startsWith("update users");
+
+        Assertions.assertThat(counterOf(get("/api/users/" + id)).statementCount()).isEqualTo(1);
+        // served from the user-by-id cache
+        Assertions.assertThat(counterOf(get("/api/users/" + id)).statementCount()).isZero();
+    }
+
+    @Test
+    public void whenHandlerIsAsync_then_countWorkerStatementsWithTheRequest() throws Exception {
+        long id = objectMapper.readTree(mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"firstName\":\"Async\",\"lastName\":\"Counted\",\"email\":\"async.counted@gmail.com\"}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString()).get("id").asLong();
+
+        MvcResult started = mockMvc.perform(get("/api/async/users/" + id)).andExpect(request().asyncStarted()).andReturn();
+        started.getAsyncResult();
+        mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk());
+
+        SqlStatementCounter counter = (SqlStatementCounter) started.getRequest().getAttribute(SqlStatementFilter.COUNTER_ATTRIBUTE);
+        Assertions.assertThat(counter.statementCount()).as("%s", counter.statements()).isEqualTo(1);
+        Assertions.assertThat(counter.statements().get(0)).startsWith("select");
+    }
+
+    @Test
+    public void whenStatementsAreSlow_then_keepThemWithTheirRequest() throws Exception {
+        slowQueryLog.clear();
+
+        // a page size no other request uses, so the response cache has nothing for it
+        counterOf(get("/api/users/pages").param("page", "0").param("size", "7"));
+
+        Assertions.assertThat(slowQueryLog.slowest()).isNotEmpty().allSatisfy(query -> {
+            Assertions.assertThat(query.getRequest()).isEqualTo("GET /api/users/pages");
+            Assertions.assertThat(query.getSql()).contains("users");
+            Assertions.assertThat(query.getDurationMillis()).isNotNegative();
+        });
+        mockMvc.perform(get("/api/admin/sql/slow-queries")).andExpect(status().isOk());
+    }
+
+    @Test
+    public void whenBatchInsertIsSlow_then_keepTheBatchStatement() throws Exception {
+        slowQueryLog.clear();
+
+        counterOf(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"firstName\":\"Batched\",\"lastName\":\"One\",\"email\":\"batched.one@gmail.com\"}," +
+                        "{\"firstName\":\"Batched\",\"lastName\":\"Two\",\"email\":\"batched.two@gmail.com\"}]"));
+
+        Assertions.assertThat(slowQueryLog.slowest()).filteredOn(SlowQuery::isBatch).singleElement()
+                .satisfies(query -> Assertions.assertThat(query.getSql()).startsWith("insert into users"));
+        Assertions.assertThat(slowQueryLog.slowest()).filteredOn(query -> !query.isBatch())
+                .allSatisfy(query -> Assertions.assertThat(query.getSql()).doesNotStartWith("insert"));
+    }
+
+    @Test
+    public void whenStatementRunsBetweenBatchedOnes_then_chargeEachTimingToWhatRan() {
+        SqlStatementInspector inspector = new SqlStatementInspector();
+        SqlTimingSessionListener listener = new SqlTimingSessionListener();
+        try (SqlStatementCounter counter = SqlStatementCounter.start(Duration.ZERO)) {
+            inspector.inspect("insert into users (email, id) values (?, ?)");
+            inspector.inspect("select next_val from users_seq for update");
+            listener.jdbcExecuteStatementStart();
+            listener.jdbcExecuteStatementEnd();
+            inspector.inspect("insert into user_roles (user_id, role) values (?, ?)");
+            listener.jdbcExecuteBatchStart();
+            listener.jdbcExecuteBatchEnd();
+
+            Assertions.assertThat(counter.slowQueries()).extracting(SlowQuery::getSql, SlowQuery::isBatch).containsExactly(
+                    Assertions.tuple("select next_val from users_seq for update", false),
+                    Assertions.tuple("insert into users (email, id) values (?, ?); insert into user_roles (user_id, role) values (?, ?)", true));
+        }
+    }
+
+    @Test
+    public void whenSameSelectRepeats_then_reportPossibleNPlusOne() {
+        SqlStatementInspector inspector = new SqlStatementInspector();
+        try (SqlStatementCounter counter = SqlStatementCounter.start()) {
+            for (int i = 0; i < 3; i++) {
+                inspector.inspect("select u.email from users u where u.id=?");
+            }
+            inspector.inspect("update users set version=? where id=?");
+            inspector.inspect("update users set version=? where id=?");
+
+            Assertions.assertThat(counter.statementCount()).isEqualTo(5);
+            Assertions.assertThat(counter.repeatedSelects(3)).containsOnlyKeys("select u.email from users u where u.id=?");
+            Assertions.assertThat(counter.repeatedSelects(4)).isEmpty();
+        }
+        Assertions.assertThat(SqlStatementCounter.current()).isNull();
+        Assertions.assertThat(inspector.inspect("select 1")).isEqualTo("select 1");
+    }
+
+    private SqlStatementCounter counterOf(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andExpect(status().is2xxSuccessful()).andReturn();
+        return (SqlStatementCounter) result.getRequest().getAttribute(SqlStatementFilter.COUNTER_ATTRIBUTE);
+    }
+}
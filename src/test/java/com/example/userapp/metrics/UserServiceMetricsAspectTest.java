@@ -0,0 +1,60 @@
+package com.example.userapp.metrics;
+
+import com.example.userapp.exception.ResourceNotFoundException;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserServiceMetricsAspectTest {
+
+    private MeterRegistry registry;
+    private UserService target;
+    private UserService userService;
+
+    @BeforeEach
+    public void setUp() {
+        registry = new SimpleMeterRegistry();
+        target = mock(UserService.class);
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.addInterface(UserService.class);
+        factory.addAspect(new UserServiceMetricsAspect(registry));
+        userService = factory.getProxy();
+    }
+
+    @Test
+    public void whenMethodReturns_then_timeItTaggedWithMethodAndNoException() {
+        when(target.getUserById(1L)).thenReturn(UserDto.builder().id(1L).build());
+
+        userService.getUserById(1L);
+        userService.getUserById(1L);
+
+        Timer timer = registry.get(UserServiceMetricsAspect.METRIC_NAME)
+                .tags("method", "getUserById", "exception", "none")
+                .timer();
+        Assertions.assertThat(timer.count()).isEqualTo(2);
+        Assertions.assertThat(registry.find(UserServiceMetricsAspect.METRIC_NAME).timers()).hasSize(1);
+    }
+
+    @Test
+    public void whenMethodThrows_then_timeItTaggedWithExceptionAndRethrow() {
+        doThrow(new ResourceNotFoundException("User", 2L)).when(target).deleteUserById(2L);
+
+        Assertions.assertThatThrownBy(() -> userService.deleteUserById(2L)).isInstanceOf(ResourceNotFoundException.class);
+
+        Timer timer = registry.get(UserServiceMetricsAspect.METRIC_NAME)
+                .tags("method", "deleteUserById", "exception", "ResourceNotFoundException")
+                .timer();
+        Assertions.assertThat(timer.count()).isEqualTo(1);
+        Assertions.assertThat(registry.find(UserServiceMetricsAspect.METRIC_NAME).tag("exception", "none").timers()).isEmpty();
+    }
+}
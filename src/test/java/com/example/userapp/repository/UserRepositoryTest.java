@@ -1,7 +1,10 @@
 package com.example.userapp.repository;
 
 import com.example.userapp.entity.User;
+import com.example.userapp.metrics.SqlStatementCounter;
+import com.example.userapp.payload.UserDto;
 import org.assertj.core.api.Assertions;
+import org.hibernate.Session;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
@@ -11,11 +14,17 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.test.annotation.Rollback;
 
 import javax.transaction.Transactional;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.example.userapp.metrics.SqlStatementAssertions.assertNoRepeatedSelects;
+import static com.example.userapp.metrics.SqlStatementAssertions.assertStatementCount;
 
 @DataJpaTest
 @Transactional
@@ -140,4 +149,141 @@ class UserRepositoryTest {
         Assertions.assertThat(result3.getContent()).doesNotContain(user1, user2);
     }
 
-}
\ No newline at end of file
+    @Test
+    @Order(7)
+    public void whenStreamAll_then_returnEveryUser() {
+        entityManager.persist(User.builder().firstName("stream1").lastName("stream1").email("stream1@gmail.com").build());
+        entityManager.persist(User.builder().firstName("stream2").lastName("stream2").email("stream2@gmail.com").build());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<String> emails;
+        try (Stream<User> users = userRepository.streamAll()) {
+            emails = users.map(User::getEmail).collect(Collectors.toList());
+        }
+        Assertions.assertThat(emails).contains("stream1@gmail.com", "stream2@gmail.com");
+    }
+
+    @Test
+    @Order(8)
+    public void whenSeekAfterId_then_returnNextRowsInIdOrder() {
+        User user1 = entityManager.persist(User.builder().firstName("seek1").lastName("seek").email("seek1@gmail.com").build());
+        User user2 = entityManager.persist(User.builder().firstName("seek2").lastName("keyword").email("seek2@gmail.com").build());
+        User user3 = entityManager.persist(User.builder().firstName("seek3").lastName("keyword").email("seek3@gmail.com").build());
+        entityManager.flush();
+
+        List<UserDto> window = userRepository.findProjectedAfter(user1.getId(), PageRequest.of(0, 1));
+        Assertions.assertThat(window).extracting(UserDto::getId).containsExactly(user2.getId());
+
+        List<UserDto> searchWindow = userRepository.searchProjectedAfter("keyword", user2.getId(), PageRequest.of(0, 5));
+        Assertions.assertThat(searchWindow).extracting(UserDto::getId).containsExactly(user3.getId());
+    }
+
+    @Test
+    @Order(9)
+    public void whenUpdateByIdAndVersion_then_updateInOneStatementAndBumpVersion() {
+        User user = entityManager.persistFlushFind(User.builder().firstName("before").lastName("before").email("before@gmail.com").build());
+        long version = user.getVersion();
+        Assertions.assertThat(userRepository.findVersionById(user.getId())).contains(version);
+
+        int updated = userRepository.updateByIdAndVersion(user.getId(), version, "after", "after", "after@gmail.com");
+        Assertions.assertThat(updated).isEqualTo(1);
+
+        User reloaded = userRepository.findById(user.getId()).get();
+        Assertions.assertThat(reloaded.getEmail()).isEqualTo("after@gmail.com");
+        Assertions.assertThat(reloaded.getVersion()).isEqualTo(version + 1);
+        Assertions.assertThat(userRepository.findVersionById(user.getId())).contains(version + 1);
+
+        Assertions.assertThat(userRepository.updateByIdAndVersion(user.getId(), version, "stale", "stale", "stale@gmail.com")).isZero();
+        Assertions.assertThat(userRepository.updateByIdAndVersion(user.getId(), version + 1, "next", "next", "next@gmail.com")).isEqualTo(1);
+        Assertions.assertThat(userRepository.updateByIdAndVersion(-1L, 0L, "none", "none", "none@gmail.com")).isZero();
+        Assertions.assertThat(userRepository.findVersionById(-1L)).isEmpty();
+    }
+
+    @Test
+    @Order(10)
+    public void whenRemoveById_then_returnDeletedRowCount() {
+        User user = entityManager.persistFlushFind(User.builder().firstName("gone").lastName("gone").email("gone@gmail.com").build());
+
+        Assertions.assertThat(userRepository.removeById(user.getId())).isEqualTo(1);
+        Assertions.assertThat(userRepository.findById(user.getId())).isEmpty();
+        Assertions.assertThat(userRepository.removeById(user.getId())).isZero();
+    }
+
+    @Test
+    @Order(11)
+    public void whenFindByEmail_then_useUniqueEmailIndex() {
+        User user = entityManager.persistFlushFind(User.builder().firstName("lookup").lastName("lookup").email("  Lookup@Gmail.com ").build());
+        Assertions.assertThat(user.getEmail()).isEqualTo("lookup@gmail.com");
+
+        Assertions.assertThat(userRepository.findByEmail("lookup@gmail.com")).contains(user);
+        Assertions.assertThat(userRepository.findByEmail("missing@gmail.com")).isEmpty();
+        Assertions.assertThat(userRepository.existsByEmail("lookup@gmail.com")).isTrue();
+        Assertions.assertThat(userRepository.existsByEmailAndIdNot("lookup@gmail.com", user.getId())).isFalse();
+
+        String plan = (String) entityManager.getEntityManager()
+                .createNativeQuery("EXPLAIN SELECT * FROM users WHERE email = 'lookup@gmail.com'")
+                .getSingleResult();
+        Assertions.assertThat(plan.toUpperCase()).contains("IDX_USERS_EMAIL");
+    }
+
+    @Test
+    @Order(12)
+    public void whenSearchProjected_then_returnDetachedDtosWithCount() {
+        entityManager.persist(User.builder().firstName("projected1").lastName("dto").email("projected1@gmail.com").build());
+        entityManager.persist(User.builder().firstName("projected2").lastName("dto").email("projected2@gmail.com").build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Page<UserDto> page = userRepository.searchProjected("projected", PageRequest.of(0, 1));
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(2L);
+        Assertions.assertThat(page.getContent()).extracting(UserDto::getEmail).containsExactly("projected1@gmail.com");
+        Assertions.assertThat(page.getContent().get(0).getVersion()).isZero();
+
+        Assertions.assertThat(userRepository.searchProjected("projected")).hasSize(2);
+        Assertions.assertThat(userRepository.countSearch("projected")).isEqualTo(2L);
+
+        Slice<UserDto> first = userRepository.searchProjectedSlice("projected", PageRequest.of(0, 1));
+        Assertions.assertThat(first.getContent()).extracting(UserDto::getEmail).containsExactly("projected1@gmail.com");
+        Assertions.assertThat(first.hasNext()).isTrue();
+        Assertions.assertThat(userRepository.searchProjectedSlice("projected", PageRequest.of(1, 1)).hasNext()).isFalse();
+        Assertions.assertThat(userRepository.findAllProjected(PageRequest.of(0, 100)).getContent())
+                .extracting(UserDto::getEmail).contains("projected1@gmail.com", "projected2@gmail.com");
+        Assertions.assertThat(userRepository.autocompleteProjected("projected", PageRequest.of(0, 10)))
+                .extracting(UserDto::getEmail).containsExactly("projected1@gmail.com", "projected2@gmail.com");
+        Assertions.assertThat(userRepository.autocompleteProjected("dto", PageRequest.of(0, 1))).hasSize(1);
+        Assertions.assertThat(userRepository.autocompleteProjected("rojected", PageRequest.of(0, 10))).isEmpty();
+        // escaped wildcards match themselves only, and only the email's local part is matched
+        Assertions.assertThat(userRepository.autocompleteProjected("!_rojected", PageRequest.of(0, 10))).isEmpty();
+        Assertions.assertThat(userRepository.autocompleteProjected("proj!%", PageRequest.of(0, 10))).isEmpty();
+        Assertions.assertThat(userRepository.autocompleteProjected("projected1@gmail", PageRequest.of(0, 10))).isEmpty();
+        // nothing was loaded into the persistence context
+        Assertions.assertThat(entityManager.getEntityManager().unwrap(Session.class)
+                .getStatistics().getEntityCount()).isZero();
+    }
+
+    @Test
+    @Order(13)
+    public void whenCallingRepository_then_issueOneStatementPerOperation() {
+        User user = entityManager.persistFlushFind(User.builder().firstName("counted").lastName("counted").email("counted@gmail.com").build());
+        entityManager.persistAndFlush(User.builder().firstName("counted2").lastName("counted").email("counted2@gmail.com").build());
+
+        try (SqlStatementCounter ignored = SqlStatementCounter.start()) {
+            userRepository.updateByIdAndVersion(user.getId(), user.getVersion(), "recounted", "counted", "counted@gmail.com");
+            assertStatementCount(1);
+
+            // the bulk update cleared the persistence context, so this goes to the database
+            userRepository.findById(user.getId());
+            assertStatementCount(1);
+
+            // a full first page needs the count query as well
+            userRepository.searchProjected("counted", PageRequest.of(0, 1));
+            assertStatementCount(2);
+
+            for (int i = 0; i < 3; i++) {
+                userRepository.existsByEmail("counted" + i + "@gmail.com");
+            }
+            assertNoRepeatedSelects(4);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.userapp.search;
+
+import com.example.userapp.datasource.ShardRoutingDataSource;
+import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.service.impl.UserIdAllocator;
+import com.example.userapp.service.impl.UserShards;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailBloomFilterTest {
+
+    private UserRepository userRepository;
+    private EmailBloomFilter emailFilter;
+    private final Set<String> stored = Set.of("ramesh@gmail.com", "tony@gmail.com");
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ObjectProvider<ShardRoutingDataSource> routingDataSource = mock(ObjectProvider.class);
+        userRepository = mock(UserRepository.class);
+        when(userRepository.count()).thenReturn((long) stored.size());
+        when(userRepository.streamAllEmails()).thenAnswer(invocation -> stored.stream());
+        emailFilter = new EmailBloomFilter(userRepository, mock(PlatformTransactionManager.class),
+                new UserShards(routingDataSource, mock(UserIdAllocator.class), mock(JdbcTemplate.class), mock(PlatformTransactionManager.class), 1), 10_000, 0.01, true);
+    }
+
+    @Test
+    public void whenNotBuilt_then_alwaysRunExactCheck() {
+        AtomicInteger queries = new AtomicInteger();
+
+        Assertions.assertThat(emailFilter.isTaken("ramesh@gmail.com", email -> queries.incrementAndGet() > 0)).isTrue();
+        Assertions.assertThat(queries).hasValue(1);
+        Assertions.assertThat(emailFilter.isReady()).isFalse();
+    }
+
+    @Test
+    public void whenEmailAbsent_then_answerWithoutExactCheck() {
+        emailFilter.rebuild();
+        AtomicInteger queries = new AtomicInteger();
+
+        boolean taken = emailFilter.isTaken("nobody@gmail.com", email -> queries.incrementAndGet() < 0);
+
+        Assertions.assertThat(taken).isFalse();
+        Assertions.assertThat(queries).hasValue(0);
+        Assertions.assertThat(emailFilter.statistics().getDefiniteMisses()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenEmailPresent_then_confirmWithNormalizedExactCheck() {
+        emailFilter.rebuild();
+
+        Assertions.assertThat(emailFilter.isTaken(" Ramesh@Gmail.com", stored::contains)).isTrue();
+        Assertions.assertThat(emailFilter.statistics().getPossibleHits()).isEqualTo(1);
+        Assertions.assertThat(emailFilter.statistics().getFalsePositives()).isZero();
+    }
+
+    @Test
+    public void whenUserSaved_then_filterLearnsEmail() {
+        emailFilter.rebuild();
+        User user = User.builder().id(3L).firstName("Bruce").lastName("Wayne").email("bruce@gmail.com").build();
+
+        emailFilter.onUserChanged(UserChangedEvent.saved(user));
+
+        Assertions.assertThat(emailFilter.isTaken("bruce@gmail.com", email -> false)).isFalse();
+        Assertions.assertThat(emailFilter.statistics().getFalsePositives()).isEqualTo(1);
+    }
+
+    @Test
+    public void whenFilledToCapacity_then_falsePositiveRateStaysNearTarget() {
+        when(userRepository.streamAllEmails()).thenAnswer(invocation -> IntStream.range(0, 10_000).mapToObj(i -> "user" + i + "@example.com"));
+        emailFilter.rebuild();
+
+        IntStream.range(0, 100_000).forEach(i -> emailFilter.isTaken("other" + i + "@example.com", email -> false));
+
+        EmailFilterStatistics statistics = emailFilter.statistics();
+        Assertions.assertThat(statistics.getInsertions()).isEqualTo(10_000);
+        Assertions.assertThat(statistics.getObservedFalsePositiveRate()).isLessThan(0.02);
+        Assertions.assertThat(statistics.getExpectedFalsePositiveRate()).isLessThan(0.02);
+    }
+}
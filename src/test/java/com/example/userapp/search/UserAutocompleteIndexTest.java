@@ -0,0 +1,136 @@
+package com.example.userapp.search;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.service.impl.UserIdAllocator;
+import com.example.userapp.service.impl.UserShards;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserAutocompleteIndexTest {
+
+    private UserRepository userRepository;
+    private UserAutocompleteIndex autocompleteIndex;
+
+    private final User silva = User.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+    private final User stark = User.builder().id(2L).firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
+    private final User silvano = User.builder().id(3L).firstName("Silvano").lastName("Perera").email("sp@yahoo.com").build();
+
+    @BeforeEach
+    public void setUp() {
+        userRepository = mock(UserRepository.class);
+        autocompleteIndex = new UserAutocompleteIndex(userRepository, mock(PlatformTransactionManager.class), singleShard(), 3, true);
+        when(userRepository.streamAll()).thenAnswer(invocation -> Stream.of(silva, stark, silvano));
+        autocompleteIndex.rebuild();
+    }
+
+    @Test
+    public void whenPrefixMatchesAnyField_then_returnShortestTermFirst() {
+        Assertions.assertThat(autocompleteIndex.isReady()).isTrue();
+        Assertions.assertThat(ids(autocompleteIndex.suggest("SIL", 3))).containsExactly(1L, 3L);
+        Assertions.assertThat(ids(autocompleteIndex.suggest("ra", 3))).containsExactly(1L);
+        Assertions.assertThat(ids(autocompleteIndex.suggest("t", 3))).containsExactly(2L);
+        // only the local part of the email is indexed
+        Assertions.assertThat(autocompleteIndex.suggest("gmail", 3)).isEmpty();
+        Assertions.assertThat(autocompleteIndex.suggest("silvax", 3)).isEmpty();
+        Assertions.assertThat(autocompleteIndex.suggest(" ", 3)).isEmpty();
+    }
+
+    @Test
+    public void whenUsersChange_then_updateTrieIncrementally() {
+        User silv = User.builder().id(4L).firstName("Silv").lastName("Fernando").email("f@x.com").build();
+        autocompleteIndex.onUserChanged(UserChangedEvent.saved(silv));
+        Assertions.assertThat(ids(autocompleteIndex.suggest("silv", 3))).containsExactly(4L, 1L, 3L);
+        Assertions.assertThat(ids(autocompleteIndex.suggest("silv", 2))).containsExactly(4L, 1L);
+
+        autocompleteIndex.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.SAVED, 1L, "Ramesh", "Dias", "ramesh@gmail.com", 1L));
+        Assertions.assertThat(ids(autocompleteIndex.suggest("silv", 3))).containsExactly(4L, 3L);
+        // suggestions carry the version a conditional update needs
+        Assertions.assertThat(autocompleteIndex.suggest("dias", 1)).extracting(UserDto::getVersion).containsExactly(1L);
+
+        autocompleteIndex.onUserChanged(UserChangedEvent.deleted(4L));
+        Assertions.assertThat(ids(autocompleteIndex.suggest("silv", 3))).containsExactly(3L);
+        Assertions.assertThat(ids(autocompleteIndex.suggest("di", 3))).containsExactly(1L);
+        Assertions.assertThat(autocompleteIndex.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void whenRandomChanges_then_matchBruteForceTopK() {
+        Random random = new Random(42);
+        String[] names = {"an", "ana", "anna", "annabel", "andre", "bo", "bob", "bobby", "b", "carla", "car", "carlos"};
+        Map<Long, User> users = new HashMap<>();
+        UserAutocompleteIndex index = new UserAutocompleteIndex(userRepository, mock(PlatformTransactionManager.class), singleShard(), 3, true);
+        when(userRepository.streamAll()).thenAnswer(invocation -> Stream.empty());
+        index.rebuild();
+
+        for (int step = 0; step < 2000; step++) {
+            long id = 1 + random.nextInt(40);
+            if (random.nextInt(4) == 0) {
+                users.remove(id);
+                index.onUserChanged(UserChangedEvent.deleted(id));
+            } else {
+                User user = User.builder().id(id)
+                        .firstName(names[random.nextInt(names.length)])
+                        .lastName(names[random.nextInt(names.length)])
+                        .email(names[random.nextInt(names.length)] + id + "@x.com")
+                        .build();
+                users.put(id, user);
+                index.onUserChanged(UserChangedEvent.saved(user));
+            }
+            for (String prefix : new String[]{"a", "an", "ann", "b", "bo", "c", "carl", "annabel", "bobby1"}) {
+                Assertions.assertThat(ids(index.suggest(prefix, 3)))
+                        .as("step %d prefix %s", step, prefix)
+                        .isEqualTo(bruteForce(users, prefix, 3));
+            }
+        }
+
+        users.keySet().forEach(id -> index.onUserChanged(UserChangedEvent.deleted(id)));
+        Assertions.assertThat(index.suggest("a", 3)).isEmpty();
+        Assertions.assertThat(index.nodeCount()).isEqualTo(1);
+    }
+
+    private static List<Long> bruteForce(Map<Long, User> users, String prefix, int limit) {
+        record Ranked(String term, long id) {
+        }
+        List<Ranked> best = new ArrayList<>();
+        for (User user : users.values()) {
+            Stream.of(user.getFirstName(), user.getLastName(), user.getEmail().substring(0, user.getEmail().indexOf('@')))
+                    .filter(term -> term.startsWith(prefix))
+                    .min(Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder()))
+                    .ifPresent(term -> best.add(new Ranked(term, user.getId())));
+        }
+        return best.stream()
+                .sorted(Comparator.comparingInt((Ranked ranked) -> ranked.term().length())
+                        .thenComparing(Ranked::term)
+                        .thenComparingLong(Ranked::id))
+                .limit(limit)
+                .map(Ranked::id)
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static UserShards singleShard() {
+        return new UserShards(mock(ObjectProvider.class), mock(UserIdAllocator.class), mock(JdbcTemplate.class), mock(PlatformTransactionManager.class), 1);
+    }
+
+    private static List<Long> ids(List<UserDto> users) {
+        return users.stream().map(UserDto::getId).toList();
+    }
+}
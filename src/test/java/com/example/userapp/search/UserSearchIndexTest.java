@@ -0,0 +1,110 @@
+package com.example.userapp.search;
+
+import com.example.userapp.datasource.ShardRoutingDataSource;
+import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.service.impl.UserIdAllocator;
+import com.example.userapp.service.impl.UserShards;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserSearchIndexTest {
+
+    private UserRepository userRepository;
+    private UserSearchIndex searchIndex;
+
+    private final User silva = User.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").version(0L).build();
+    private final User stark = User.builder().id(2L).firstName("Tony").lastName("Stark").email("tony@gmail.com").version(0L).build();
+    private final User silvano = User.builder().id(3L).firstName("Silvano").lastName("Perera").email("perera@yahoo.com").version(0L).build();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        ObjectProvider<ShardRoutingDataSource> routingDataSource = mock(ObjectProvider.class);
+        userRepository = mock(UserRepository.class);
+        searchIndex = new UserSearchIndex(userRepository, mock(PlatformTransactionManager.class),
+                new UserShards(routingDataSource, mock(UserIdAllocator.class), mock(JdbcTemplate.class), mock(PlatformTransactionManager.class), 1), true);
+        when(userRepository.streamAll()).thenAnswer(invocation -> Stream.of(silva, stark, silvano));
+        searchIndex.rebuild();
+    }
+
+    @Test
+    public void whenSearchInfix_then_returnCaseInsensitiveMatches() {
+        Assertions.assertThat(searchIndex.isReady()).isTrue();
+        Assertions.assertThat(ids(searchIndex.search("ILV"))).containsExactlyInAnyOrder(1L, 3L);
+        Assertions.assertThat(ids(searchIndex.search("gmail.com"))).containsExactly(1L, 2L);
+        Assertions.assertThat(searchIndex.search("nobody")).isEmpty();
+    }
+
+    @Test
+    public void whenSearch_then_rankExactBeforePrefixBeforeInfix() {
+        User exact = User.builder().id(4L).firstName("Silv").lastName("Fernando").email("f@x.com").build();
+        searchIndex.onUserChanged(UserChangedEvent.saved(exact));
+
+        Assertions.assertThat(ids(searchIndex.search("silv"))).containsExactly(4L, 1L, 3L);
+    }
+
+    @Test
+    public void whenCount_then_matchSearchSize() {
+        Assertions.assertThat(searchIndex.count("silv")).isEqualTo(searchIndex.search("silv").size()).isEqualTo(2);
+        Assertions.assertThat(searchIndex.count("nobody")).isZero();
+    }
+
+    @Test
+    public void whenShortQuery_then_scanDocuments() {
+        Assertions.assertThat(ids(searchIndex.search("to"))).containsExactly(2L);
+    }
+
+    @Test
+    public void whenUserUpdatedOrDeleted_then_indexFollows() {
+        User renamed = User.builder().id(2L).firstName("Anthony").lastName("Edward").email("tony@gmail.com").build();
+        searchIndex.onUserChanged(UserChangedEvent.saved(renamed));
+        searchIndex.onUserChanged(UserChangedEvent.deleted(3L));
+
+        Assertions.assertThat(searchIndex.search("stark")).isEmpty();
+        Assertions.assertThat(ids(searchIndex.search("edward"))).containsExactly(2L);
+        Assertions.assertThat(ids(searchIndex.search("silv"))).containsExactly(1L);
+    }
+
+    @Test
+    public void whenIndexed_then_returnCurrentVersionForConditionalUpdates() {
+        Assertions.assertThat(searchIndex.search("tony")).extracting(UserDto::getVersion).containsExactly(0L);
+        // a row whose version moved on without the index seeing it is stale
+        silva.setVersion(5L);
+        Assertions.assertThat(searchIndex.verify().getStale()).isEqualTo(1L);
+
+        searchIndex.onUserChanged(UserChangedEvent.saved(User.builder().id(2L).firstName("Tony").lastName("Stark")
+                .email("tony@gmail.com").version(1L).build()));
+
+        Assertions.assertThat(searchIndex.search("tony")).extracting(UserDto::getVersion).containsExactly(1L);
+    }
+
+    @Test
+    public void whenIndexDrifts_then_verifyReportsDifferences() {
+        Assertions.assertThat(searchIndex.verify().isConsistent()).isTrue();
+
+        searchIndex.onUserChanged(UserChangedEvent.deleted(1L));
+        searchIndex.onUserChanged(UserChangedEvent.saved(User.builder().id(9L).firstName("Ghost").lastName("User").email("ghost@gmail.com").build()));
+
+        IndexVerification verification = searchIndex.verify();
+        Assertions.assertThat(verification.isConsistent()).isFalse();
+        Assertions.assertThat(verification.getMissing()).isEqualTo(1L);
+        Assertions.assertThat(verification.getOrphaned()).isEqualTo(1L);
+    }
+
+    private static List<Long> ids(List<UserDto> users) {
+        return users.stream().map(UserDto::getId).toList();
+    }
+}
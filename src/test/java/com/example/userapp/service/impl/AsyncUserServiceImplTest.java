@@ -0,0 +1,81 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.datasource.DataSourceRouting;
+import com.example.userapp.datasource.ShardContext;
+import com.example.userapp.metrics.SqlStatementCounter;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.service.UserService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AsyncUserServiceImplTest {
+
+    private final UserService userService = mock(UserService.class);
+    private final HikariDataSource pool = new HikariDataSource();
+    private AsyncUserServiceImpl asyncUserService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        pool.setMaximumPoolSize(4);
+        ObjectProvider<HikariDataSource> provider = mock(ObjectProvider.class);
+        when(provider.getIfUnique()).thenReturn(pool);
+        asyncUserService = new AsyncUserServiceImpl(userService, new SimpleMeterRegistry(), provider, 10, 20);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        asyncUserService.destroy();
+    }
+
+    @Test
+    public void whenCalled_then_runOnWorkerWithCallersContext() throws Exception {
+        List<Object> seen = new ArrayList<>();
+        when(userService.getUserById(anyLong())).thenAnswer(invocation -> {
+            seen.add(Thread.currentThread().getName());
+            seen.add(DataSourceRouting.isPrimaryRequired());
+            seen.add(ShardContext.current());
+            seen.add(SqlStatementCounter.current());
+            return UserDto.builder().id(invocation.getArgument(0)).build();
+        });
+
+        try (SqlStatementCounter counter = SqlStatementCounter.start()) {
+            DataSourceRouting.onPrimary(() -> ShardContext.on(3, () -> asyncUserService.getUserById(1L)))
+                    .get(5, TimeUnit.SECONDS);
+
+            Assertions.assertThat((String) seen.get(0)).startsWith("user-service-");
+            Assertions.assertThat(seen.subList(1, 4)).containsExactly(true, 3, counter);
+        }
+
+        seen.clear();
+        asyncUserService.getUserById(2L).get(5, TimeUnit.SECONDS);
+        Assertions.assertThat(seen.subList(1, 4)).containsExactly(false, null, null);
+    }
+
+    @Test
+    public void whenPoolIsResized_then_followItsMaximumSize() throws Exception {
+        when(userService.getUserById(anyLong())).thenReturn(UserDto.builder().id(1L).build());
+        Assertions.assertThat(asyncUserService.getThreadCount()).isEqualTo(4);
+
+        pool.setMaximumPoolSize(6);
+        asyncUserService.getUserById(1L).get(5, TimeUnit.SECONDS);
+        Assertions.assertThat(asyncUserService.getThreadCount()).isEqualTo(6);
+
+        pool.setMaximumPoolSize(2);
+        asyncUserService.getUserById(1L).get(5, TimeUnit.SECONDS);
+        Assertions.assertThat(asyncUserService.getThreadCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.EmailBloomFilter;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserBatchWriterTest {
+
+    private UserRepository repository;
+    private EmailBloomFilter emailFilter;
+    private UserBatchWriter batchWriter;
+    private final List<List<String>> insertedChunks = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        repository = mock(UserRepository.class);
+        emailFilter = mock(EmailBloomFilter.class);
+        when(repository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<User> chunk = invocation.getArgument(0);
+            insertedChunks.add(chunk.stream().map(User::getEmail).toList());
+            return chunk;
+        });
+        UserShards shards = new UserShards(mock(ObjectProvider.class), mock(UserIdAllocator.class), mock(JdbcTemplate.class), mock(PlatformTransactionManager.class), 1);
+        batchWriter = new UserBatchWriter(repository, mock(EntityManager.class), mock(PlatformTransactionManager.class),
+                shards, emailFilter, 2);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenEmailsRepeatOrAreTaken_then_rejectThoseRowsAndInsertTheRest() {
+        when(emailFilter.isTaken(anyString(), any(Predicate.class)))
+                .thenAnswer(invocation -> ((Predicate<String>) invocation.getArgument(1)).test(invocation.getArgument(0)));
+        when(repository.existsByEmail("taken@gmail.com")).thenReturn(true);
+
+        List<String> failures = batchWriter.write(List.of(
+                user("ramesh@gmail.com"),
+                user("Ramesh@Gmail.com"),
+                user("taken@gmail.com"),
+                user("tony@gmail.com"),
+                user("tony@gmail.com")));
+
+        Assertions.assertThat(failures).containsExactly(
+                null,
+                "a user with email ramesh@gmail.com already exists",
+                "a user with email taken@gmail.com already exists",
+                null,
+                "a user with email tony@gmail.com already exists");
+        // the second chunk is inserted without its taken row rather than failing and retrying row by row
+        Assertions.assertThat(insertedChunks).containsExactly(List.of("ramesh@gmail.com"), List.of("tony@gmail.com"));
+    }
+
+    @Test
+    public void whenChunkFailsForAnotherReason_then_retryOnlyItsUncheckedRows() {
+        doAnswer(invocation -> {
+            List<User> chunk = invocation.getArgument(0);
+            if (chunk.stream().anyMatch(user -> user.getEmail().startsWith("bad"))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            insertedChunks.add(chunk.stream().map(User::getEmail).toList());
+            return chunk;
+        }).when(repository).saveAll(anyList());
+
+        List<String> failures = batchWriter.write(List.of(user("bad@gmail.com"), user("tony@gmail.com"), user("tony@gmail.com")));
+
+        Assertions.assertThat(failures).containsExactly(
+                "value too long",
+                null,
+                "a user with email tony@gmail.com already exists");
+        Assertions.assertThat(insertedChunks).containsExactly(List.of("tony@gmail.com"));
+    }
+
+    private static User user(String email) {
+        return User.builder().firstName("First").lastName("Last").email(email).build();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.entity.User;
+import com.example.userapp.mapper.UserMapperImpl;
+import com.example.userapp.payload.ImportRejection;
+import com.example.userapp.payload.ImportSummary;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UserImportServiceImplTest {
+
+    private UserBatchWriter batchWriter;
+    private UserImportServiceImpl importService;
+    private final List<List<User>> writtenChunks = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        batchWriter = mock(UserBatchWriter.class);
+        when(batchWriter.getChunkSize()).thenReturn(2);
+        when(batchWriter.write(anyList())).thenAnswer(invocation -> {
+            List<User> chunk = new ArrayList<>(invocation.getArgument(0));
+            writtenChunks.add(chunk);
+            List<String> failures = new ArrayList<>();
+            for (User user : chunk) {
+                failures.add(user.getEmail().startsWith("dup") ? "Unique index or primary key violation" : null);
+            }
+            return failures;
+        });
+        importService = new UserImportServiceImpl(batchWriter, new UserMapperImpl(),
+                Validation.buildDefaultValidatorFactory().getValidator(), 100, 4096);
+    }
+
+    @Test
+    public void whenImportCsvWithHeader_then_writeValidRowsInChunks() throws IOException {
+        ImportSummary summary = importService.importCsv(csv(
+                "email,last_name,first_name\n" +
+                "Ramesh@Gmail.com,Silva,Ramesh\n" +
+                "\n" +
+                "tony@gmail.com,Stark,Tony\n" +
+                "bruce@gmail.com,Wayne,Bruce\n"));
+
+        Assertions.assertThat(summary.getRows()).isEqualTo(3);
+        Assertions.assertThat(summary.getAccepted()).isEqualTo(3);
+        Assertions.assertThat(summary.getRejected()).isZero();
+        Assertions.assertThat(writtenChunks).extracting(List::size).containsExactly(2, 1);
+        User first = writtenChunks.get(0).get(0);
+        Assertions.assertThat(first.getFirstName()).isEqualTo("Ramesh");
+        Assertions.assertThat(first.getEmail()).isEqualTo("ramesh@gmail.com");
+    }
+
+    @Test
+    public void whenImportCsvWithBadRows_then_reportTheirLines() throws IOException {
+        ImportSummary summary = importService.importCsv(csv(
+                "Ramesh,Silva,ramesh@gmail.com\n" +
+                "T,Stark,not-an-email\n" +
+                "Bruce,Wayne\n" +
+                "\"Wayne, Jr\",\"Say \"\"hi\"\"\",dup@gmail.com\n" +
+                "\"Diana,Prince,diana@gmail.com\n"));
+
+        Assertions.assertThat(summary.getRows()).isEqualTo(5);
+        Assertions.assertThat(summary.getAccepted()).isEqualTo(1);
+        Assertions.assertThat(summary.getRejected()).isEqualTo(4);
+        Assertions.assertThat(summary.getRejections()).extracting(ImportRejection::getLine).containsExactly(2L, 3L, 4L, 5L);
+        Assertions.assertThat(summary.getRejections().get(0).getErrors()).hasSize(2);
+        Assertions.assertThat(summary.getRejections().get(1).getErrors()).containsExactly("expected 3 fields but found 2");
+        Assertions.assertThat(summary.getRejections().get(2).getErrors()).containsExactly("Unique index or primary key violation");
+        Assertions.assertThat(writtenChunks.get(0).get(1).getLastName()).isEqualTo("Say \"hi\"");
+    }
+
+    @Test
+    public void whenManyRowsRejected_then_capReportedRejections() throws IOException {
+        importService = new UserImportServiceImpl(batchWriter, new UserMapperImpl(),
+                Validation.buildDefaultValidatorFactory().getValidator(), 3, 4096);
+
+        ImportSummary summary = importService.importCsv(csv(String.join("\n", Collections.nCopies(10, "x,y,z"))));
+
+        Assertions.assertThat(summary.getRejected()).isEqualTo(10);
+        Assertions.assertThat(summary.getRejections()).hasSize(3);
+    }
+
+    @Test
+    public void whenLineIsTooLong_then_rejectItAndKeepReading() throws IOException {
+        importService = new UserImportServiceImpl(batchWriter, new UserMapperImpl(),
+                Validation.buildDefaultValidatorFactory().getValidator(), 100, 40);
+
+        ImportSummary summary = importService.importCsv(csv(
+                "Ramesh,Silva,ramesh@gmail.com\r\n" +
+                "Tony,Stark," + "x".repeat(100_000) + "@gmail.com\r\n" +
+                "Bruce,Wayne,bruce@gmail.com\r\n" +
+                "Diana," + "y".repeat(100_000)));
+
+        Assertions.assertThat(summary.getRows()).isEqualTo(4);
+        Assertions.assertThat(summary.getAccepted()).isEqualTo(2);
+        Assertions.assertThat(summary.getRejections()).extracting(ImportRejection::getLine).containsExactly(2L, 4L);
+        Assertions.assertThat(summary.getRejections().get(0).getErrors()).containsExactly("line is longer than 40 characters");
+        Assertions.assertThat(writtenChunks.get(0)).extracting(User::getEmail).containsExactly("ramesh@gmail.com", "bruce@gmail.com");
+    }
+
+    private static ByteArrayInputStream csv(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
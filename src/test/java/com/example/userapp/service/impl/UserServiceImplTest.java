@@ -1,24 +1,63 @@
 package com.example.userapp.service.impl;
 
+import com.example.userapp.cache.ReadCoalescer;
+import com.example.userapp.cache.UserCache;
 import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.exception.BadRequestException;
+import com.example.userapp.exception.ConcurrentUpdateException;
+import com.example.userapp.exception.DuplicateEmailException;
+import com.example.userapp.exception.PreconditionRequiredException;
 import com.example.userapp.exception.ResourceNotFoundException;
+import com.example.userapp.mapper.UserMapper;
+import com.example.userapp.payload.BatchCreateResponse;
+import com.example.userapp.payload.BatchItemResult;
+import com.example.userapp.payload.ScrollResponse;
 import com.example.userapp.payload.UserDto;
 import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.EmailBloomFilter;
+import com.example.userapp.search.SearchCountEstimator;
+import com.example.userapp.search.UserAutocompleteIndex;
+import com.example.userapp.search.UserSearchIndex;
 import org.assertj.core.api.Assertions;
 import org.hibernate.mapping.Any;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
-import org.modelmapper.ModelMapper;
+import org.mockito.Spy;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
-
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
-
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -32,7 +71,41 @@ class UserServiceImplTest {
     private UserRepository userRepository;
 
     @Mock
-    private ModelMapper modelMapper;
+    private UserMapper userMapper;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private UserSearchIndex searchIndex;
+
+    @Mock
+    private UserBatchWriter batchWriter;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private SearchCountEstimator countEstimator;
+
+    @Mock
+    private EmailBloomFilter emailFilter;
+
+    @Mock
+    private UserAutocompleteIndex autocompleteIndex;
+
+    @Spy
+    private UserCache userCache = new UserCache(100, Duration.ofMinutes(1));
+
+    @Spy
+    private ReadCoalescer readCoalescer = new ReadCoalescer(mock(PlatformTransactionManager.class));
+
+    @Spy
+    @SuppressWarnings("unchecked")
+    private UserShards shards = new UserShards(mock(ObjectProvider.class), mock(UserIdAllocator.class), mock(JdbcTemplate.class), mock(PlatformTransactionManager.class), 1);
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
 
     @Test
     public void when_SaveUserDto_then_ReturnSameUser() {
@@ -48,14 +121,76 @@ class UserServiceImplTest {
                 .email("emailNew@gmail.com")
                 .build();
         when(userRepository.save(user)).thenReturn(user);
-        when(modelMapper.map(user, UserDto.class)).thenReturn(userDto);
-        when(modelMapper.map(userDto, User.class)).thenReturn(user);
+        when(userMapper.toDto(user)).thenReturn(userDto);
+        when(userMapper.toEntity(userDto)).thenReturn(user);
         UserDto returnUser = userService.saveUser(userDto);
         Assertions.assertThat(returnUser.getFirstName()).isEqualTo("firstNameNew");
         Assertions.assertThat(returnUser.getLastName()).isEqualTo("lastNameNew");
         Assertions.assertThat(returnUser.getEmail()).isEqualTo("emailNew@gmail.com");
     }
 
+    @Test
+    public void when_SaveUserDtoList_then_ReturnPerItemResults() {
+        UserDto valid = UserDto.builder().firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+        UserDto invalid = UserDto.builder().firstName("R").lastName("Silva").email("not-an-email").build();
+        UserDto duplicate = UserDto.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
+        User validUser = User.builder().firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+        User duplicateUser = User.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
+        UserDto savedDto = UserDto.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+
+        when(userMapper.toEntity(valid)).thenReturn(validUser);
+        when(userMapper.toEntity(duplicate)).thenReturn(duplicateUser);
+        when(userMapper.toDto(validUser)).thenReturn(savedDto);
+        when(batchWriter.write(List.of(validUser, duplicateUser))).thenReturn(Arrays.asList(null, "duplicate key"));
+
+        BatchCreateResponse response = userService.saveUsers(List.of(valid, invalid, duplicate));
+
+        Assertions.assertThat(response.getTotal()).isEqualTo(3);
+        Assertions.assertThat(response.getCreated()).isEqualTo(1);
+        Assertions.assertThat(response.getRejected()).isEqualTo(2);
+        Assertions.assertThat(response.getResults()).extracting(BatchItemResult::getStatus).containsExactly(
+                BatchItemResult.Status.CREATED, BatchItemResult.Status.REJECTED, BatchItemResult.Status.REJECTED);
+        Assertions.assertThat(response.getResults().get(0).getUser().getId()).isEqualTo(1L);
+        Assertions.assertThat(response.getResults().get(1).getErrors()).hasSize(2);
+        Assertions.assertThat(response.getResults().get(2).getErrors()).containsExactly("duplicate key");
+    }
+
+    @Test
+    public void when_saveUserWithTakenEmail_then_ThrowDuplicateEmailException() {
+        UserDto userDto = UserDto.builder().firstName("firstName").lastName("lastName").email("Taken@gmail.com").build();
+        when(userMapper.toEntity(userDto)).thenReturn(User.builder().firstName("firstName").lastName("lastName").email("Taken@gmail.com").build());
+        when(emailFilter.isTaken(eq("taken@gmail.com"), any())).thenReturn(true);
+
+        Assertions.assertThatExceptionOfType(DuplicateEmailException.class)
+                .isThrownBy(() -> userService.saveUser(userDto))
+                .withMessage("a user with email taken@gmail.com already exists");
+        verify(userRepository, never()).save(any());
+    }
+
+    @Test
+    public void when_saveUserLosesRaceOnEmail_then_ThrowDuplicateEmailException() {
+        UserDto userDto = UserDto.builder().firstName("firstName").lastName("lastName").email("race@gmail.com").build();
+        User user = User.builder().firstName("firstName").lastName("lastName").email("race@gmail.com").build();
+        when(userMapper.toEntity(userDto)).thenReturn(user);
+        when(userRepository.save(user)).thenThrow(new DataIntegrityViolationException("idx_users_email"));
+        when(userRepository.existsByEmail("race@gmail.com")).thenReturn(true);
+
+        Assertions.assertThatExceptionOfType(DuplicateEmailException.class)
+                .isThrownBy(() -> userService.saveUser(userDto));
+    }
+
+    @Test
+    public void when_updateUserToAnotherUsersEmail_then_ThrowDuplicateEmailException() {
+        UserDto userDto = UserDto.builder().firstName("changedName").lastName("changedName").email("taken@gmail.com").version(0L).build();
+        when(emailFilter.isTaken(eq("taken@gmail.com"), any())).thenAnswer(invocation ->
+                invocation.<java.util.function.Predicate<String>>getArgument(1).test("taken@gmail.com"));
+        when(userRepository.existsByEmailAndIdNot("taken@gmail.com", 1L)).thenReturn(true);
+
+        Assertions.assertThatExceptionOfType(DuplicateEmailException.class)
+                .isThrownBy(() -> userService.updateUser(userDto, 1L));
+        verify(userRepository, never()).updateByIdAndVersion(anyLong(), anyLong(), any(), any(), any());
+    }
+
     @Test
     public void when_updateUserWithId_then_ReturnUpdatedUserObject() {
         long userId = 1L;
@@ -63,31 +198,53 @@ class UserServiceImplTest {
                 .firstName("changedName")
                 .lastName("changedName")
                 .email("emailNew@gmail.com")
+                .version(0L)
                 .build();
+        when(userRepository.updateByIdAndVersion(userId, 0L, "changedName", "changedName", "emailnew@gmail.com")).thenReturn(1);
 
-        User user = User.builder()
-                .firstName("OrgName")
-                .lastName("OrgName")
-                .email("emailNew@gmail.com")
-                .build();
+        UserDto returnUser = userService.updateUser(newUserDto, userId);
+        verify(userRepository, never()).findById(userId);
+        verify(eventPublisher).publishEvent(any(UserChangedEvent.class));
 
-        User updatedUser = User.builder()
-                .firstName("changedName")
-                .lastName("changedName")
-                .email("emailNew@gmail.com")
-                .build();
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
-        when(userRepository.save(user)).thenReturn(updatedUser);
+        Assertions.assertThat(returnUser.getId()).isEqualTo(userId);
+        Assertions.assertThat(returnUser.getFirstName()).isEqualTo("changedName");
+        Assertions.assertThat(returnUser.getLastName()).isEqualTo("changedName");
+        Assertions.assertThat(returnUser.getEmail()).isEqualTo("emailnew@gmail.com");
+    }
 
-        when(modelMapper.map(updatedUser, UserDto.class)).thenReturn(newUserDto);
-        when(modelMapper.map(newUserDto, User.class)).thenReturn(updatedUser);
+    @Test
+    public void when_updateUserWithoutVersion_then_ThrowPreconditionRequiredException() {
+        UserDto newUserDto = UserDto.builder().firstName("changedName").lastName("changedName").email("emailNew@gmail.com").build();
+
+        Assertions.assertThatExceptionOfType(PreconditionRequiredException.class)
+                .isThrownBy(() -> userService.updateUser(newUserDto, 1L));
+        verify(userRepository, never()).updateByIdAndVersion(anyLong(), anyLong(), any(), any(), any());
+        verify(eventPublisher, never()).publishEvent(any());
+    }
+
+    @Test
+    public void when_updateUserWithVersion_then_ReturnNextVersion() {
+        long userId = 1L;
+        UserDto newUserDto = UserDto.builder().firstName("changedName").lastName("changedName")
+                .email("emailNew@gmail.com").version(3L).build();
+        when(userRepository.updateByIdAndVersion(userId, 3L, "changedName", "changedName", "emailnew@gmail.com")).thenReturn(1);
 
         UserDto returnUser = userService.updateUser(newUserDto, userId);
-        verify(userRepository).save(user);
 
-        Assertions.assertThat(returnUser.getFirstName()).isEqualTo("changedName");
-        Assertions.assertThat(returnUser.getLastName()).isEqualTo("changedName");
-        Assertions.assertThat(returnUser.getEmail()).isEqualTo("emailNew@gmail.com");
+        Assertions.assertThat(returnUser.getVersion()).isEqualTo(4L);
+    }
+
+    @Test
+    public void when_updateUserWithStaleVersion_then_ThrowConcurrentUpdateException() {
+        long userId = 1L;
+        UserDto newUserDto = UserDto.builder().firstName("changedName").lastName("changedName")
+                .email("emailNew@gmail.com").version(3L).build();
+        when(userRepository.updateByIdAndVersion(userId, 3L, "changedName", "changedName", "emailnew@gmail.com")).thenReturn(0);
+        when(userRepository.existsById(userId)).thenReturn(true);
+
+        Assertions.assertThatExceptionOfType(ConcurrentUpdateException.class)
+                .isThrownBy(() -> userService.updateUser(newUserDto, userId));
+        verify(eventPublisher, never()).publishEvent(any());
     }
 
     @Test
@@ -115,7 +272,7 @@ class UserServiceImplTest {
                 .build();
         when(userRepository.findById(1L)).thenReturn(Optional.of(user));
 
-        when(modelMapper.map(user, UserDto.class)).thenReturn(userDto);
+        when(userMapper.toDto(user)).thenReturn(userDto);
         UserDto returnUser = userService.getUserById(1L);
         Assertions.assertThat(returnUser.getFirstName()).isEqualTo("firstNameNew");
         Assertions.assertThat(returnUser.getLastName()).isEqualTo("lastNameNew");
@@ -123,6 +280,56 @@ class UserServiceImplTest {
 
     }
 
+    @Test
+    public void when_getUserByIdTwice_then_LoadFromRepositoryOnce() {
+        User user = User.builder().id(1L).firstName("firstNameNew").lastName("lastNameNew").email("emailNew@gmail.com").build();
+        UserDto userDto = UserDto.builder().id(1L).firstName("firstNameNew").lastName("lastNameNew").email("emailNew@gmail.com").build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userMapper.toDto(user)).thenReturn(userDto);
+
+        userService.getUserById(1L);
+        UserDto returnUser = userService.getUserById(1L);
+
+        Assertions.assertThat(returnUser).isSameAs(userDto);
+        verify(userRepository, times(1)).findById(1L);
+    }
+
+    @Test
+    public void when_getCurrentVersion_then_ReadRepositoryPastTheCache() {
+        User user = User.builder().id(1L).firstName("firstNameNew").lastName("lastNameNew").email("emailNew@gmail.com").version(3L).build();
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(userMapper.toDto(user)).thenReturn(UserDto.builder().id(1L).version(3L).build());
+        when(userRepository.findVersionById(1L)).thenReturn(Optional.of(5L));
+
+        userService.getUserById(1L);
+
+        Assertions.assertThat(userService.getCurrentVersion(1L)).isEqualTo(5L);
+        when(userRepository.findVersionById(2L)).thenReturn(Optional.empty());
+        Assertions.assertThatExceptionOfType(ResourceNotFoundException.class)
+                .isThrownBy(() -> userService.getCurrentVersion(2L));
+    }
+
+    @Test
+    public void when_getUserByEmail_then_LookUpNormalizedEmail() {
+        User user = User.builder().id(1L).firstName("firstNameNew").lastName("lastNameNew").email("emailnew@gmail.com").build();
+        UserDto userDto = UserDto.builder().id(1L).firstName("firstNameNew").lastName("lastNameNew").email("emailnew@gmail.com").build();
+        when(userRepository.findByEmail("emailnew@gmail.com")).thenReturn(Optional.of(user));
+        when(userMapper.toDto(user)).thenReturn(userDto);
+
+        UserDto returnUser = userService.getUserByEmail(" EmailNew@gmail.com ");
+
+        Assertions.assertThat(returnUser).isSameAs(userDto);
+    }
+
+    @Test
+    public void when_getUserByUnknownEmail_then_ThrowResourceNotFoundException() {
+        when(userRepository.findByEmail("nobody@gmail.com")).thenReturn(Optional.empty());
+
+        Assertions.assertThatExceptionOfType(ResourceNotFoundException.class)
+                .isThrownBy(() -> userService.getUserByEmail("nobody@gmail.com"))
+                .withMessage("user not found for email: nobody@gmail.com");
+    }
+
     @Test
     public void when_getUsers_then_ReturnUserObject() {
 
@@ -140,8 +347,8 @@ class UserServiceImplTest {
 
         when(userRepository.findAll()).thenReturn(users);
 
-        when(modelMapper.map(user1, UserDto.class)).thenReturn(userDto1);
-        when(modelMapper.map(user2, UserDto.class)).thenReturn(userDto2);
+        when(userMapper.toDto(user1)).thenReturn(userDto1);
+        when(userMapper.toDto(user2)).thenReturn(userDto2);
         List<UserDto> returnUsers = userService.getAllUsers();
 
         Assertions.assertThat(returnUsers).containsExactlyElementsOf(listOfUsers);
@@ -150,61 +357,193 @@ class UserServiceImplTest {
     }
 
     @Test
-    public void when_getUsersWithPagination_then_ReturnUserObject() {
-        List<User> users = new ArrayList<>();
+    public void when_streamUsers_then_DetachEachStreamedUser() {
+        UserDto userDto1 = UserDto.builder().firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+        UserDto userDto2 = UserDto.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
         User user1 = User.builder().firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
         User user2 = User.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
+
+        when(userRepository.streamAll()).thenReturn(Stream.of(user1, user2));
+        when(userMapper.toDto(user1)).thenReturn(userDto1);
+        when(userMapper.toDto(user2)).thenReturn(userDto2);
+
+        List<UserDto> streamedUsers = new ArrayList<>();
+        userService.streamAllUsers(streamedUsers::add);
+
+        Assertions.assertThat(streamedUsers).containsExactly(userDto1, userDto2);
+        verify(entityManager).detach(user1);
+        verify(entityManager).detach(user2);
+    }
+
+    @Test
+    public void when_getUsersWithPagination_then_ReturnUserObject() {
+        List<UserDto> users = new ArrayList<>();
+        UserDto user1 = UserDto.builder().firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+        UserDto user2 = UserDto.builder().firstName("Tony").lastName("Stark").email("tony@gmail.com").build();
         users.add(user1);
         users.add(user2);
 
-        Page<User> pages = new PageImpl<>(users, PageRequest.of(0, 2), users.size());
+        Page<UserDto> pages = new PageImpl<>(users, PageRequest.of(0, 2), users.size());
 
-        when(userRepository.findAll(PageRequest.of(0, 2))).thenReturn(pages);
+        when(userRepository.findAllProjected(PageRequest.of(0, 2))).thenReturn(pages);
 
-        Page<User> returnUsers = userService.getUserWithPagination(0, 2);
+        Page<UserDto> returnUsers = userService.getUserWithPagination(0, 2);
         Assertions.assertThat(returnUsers.getContent()).hasSize(users.size());
         Assertions.assertThat(returnUsers).containsExactlyElementsOf(users);
     }
 
+    @Test
+    public void when_scrollUsers_then_ReturnCursorOfLastRowInWindow() {
+        List<UserDto> users = new ArrayList<>();
+        users.add(UserDto.builder().id(5L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build());
+        users.add(UserDto.builder().id(7L).firstName("Tony").lastName("Stark").email("tony@gmail.com").build());
+        users.add(UserDto.builder().id(9L).firstName("Bruce").lastName("Wayne").email("bruce@gmail.com").build());
+        when(userRepository.findProjectedAfter(0L, PageRequest.of(0, 3))).thenReturn(users);
+        when(userRepository.findProjectedAfter(7L, PageRequest.of(0, 3))).thenReturn(users.subList(2, 3));
+
+        ScrollResponse<UserDto> first = userService.scrollUsers(null, 2);
+        Assertions.assertThat(first.getContent()).containsExactly(users.get(0), users.get(1));
+        Assertions.assertThat(first.isHasNext()).isTrue();
+
+        ScrollResponse<UserDto> second = userService.scrollUsers(first.getNextCursor(), 2);
+        Assertions.assertThat(second.getContent()).containsExactly(users.get(2));
+        Assertions.assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void when_scrollWithInvalidCursor_then_ThrowBadRequestException() {
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> userService.scrollUsers("not-a-cursor", 2));
+    }
+
     @Test
     public void when_searchUserByKeyword_then_ReturnsListOfUsers() {
         String q = "keyword";
-        List<User> users = new ArrayList<>();
-        User user1 = User.builder().firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build();
-        User user2 = User.builder().firstName("Tony").lastName("keyword").email("tony@gmail.com").build();
+        List<UserDto> users = new ArrayList<>();
+        UserDto user1 = UserDto.builder().firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build();
+        UserDto user2 = UserDto.builder().firstName("Tony").lastName("keyword").email("tony@gmail.com").build();
         users.add(user1);
         users.add(user2);
 
-        when(userRepository.searchUsers(q)).thenReturn(users);
+        when(userRepository.searchProjected(q)).thenReturn(users);
 
-        List<User> returnUsers = userService.searchUser(q);
+        List<UserDto> returnUsers = userService.searchUser(q);
         Assertions.assertThat(returnUsers).containsExactlyElementsOf(users);
     }
 
+    @Test
+    public void when_identicalSearchesRunConcurrently_then_QueryOnce() throws Exception {
+        String q = "trending";
+        int callers = 16;
+        List<UserDto> users = List.of(UserDto.builder().id(1L).firstName("trending").lastName("Silva").email("ramesh@gmail.com").build());
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.searchProjected(q)).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return users;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<CompletableFuture<List<UserDto>>> results = new ArrayList<>();
+            for (int i = 0; i < callers; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> userService.searchUser(q), executor));
+            }
+            // hold the first query until every other caller has joined it
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (readCoalescer.coalescedCount() < callers - 1 && System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            for (CompletableFuture<List<UserDto>> result : results) {
+                Assertions.assertThat(result.get(5, TimeUnit.SECONDS)).isSameAs(users);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(userRepository, times(1)).searchProjected(q);
+        Assertions.assertThat(readCoalescer.executedCount()).isEqualTo(1);
+        Assertions.assertThat(readCoalescer.coalescedCount()).isEqualTo(callers - 1);
+    }
+
+    @Test
+    public void when_searchIndexIsReady_then_SearchWithoutRepository() {
+        String q = "keyword";
+        List<UserDto> users = List.of(UserDto.builder().id(1L).firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build());
+        when(searchIndex.isReady()).thenReturn(true);
+        when(searchIndex.search(q)).thenReturn(users);
+
+        List<UserDto> returnUsers = userService.searchUser(q);
+        Assertions.assertThat(returnUsers).containsExactlyElementsOf(users);
+        verify(userRepository, never()).searchUsers(q);
+    }
+
     @Test
     public void when_searchUserByKeywordWithPaging_then_ReturnsListOfUsers() {
         String q = "keyword";
-        List<User> users = new ArrayList<>();
-        User user1 = User.builder().firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build();
-        User user2 = User.builder().firstName("Tony").lastName("keyword").email("tony@gmail.com").build();
+        List<UserDto> users = new ArrayList<>();
+        UserDto user1 = UserDto.builder().firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build();
+        UserDto user2 = UserDto.builder().firstName("Tony").lastName("keyword").email("tony@gmail.com").build();
         users.add(user1);
         users.add(user2);
-        Page<User> pages = new PageImpl<>(users, PageRequest.of(0, 2), users.size());
-        when(userRepository.findByFirstNameContainingOrLastNameContainingOrEmailContaining(q, q, q,PageRequest.of(0, 2))).thenReturn(pages);
+        Page<UserDto> pages = new PageImpl<>(users, PageRequest.of(0, 2), users.size());
+        when(userRepository.searchProjected(q, PageRequest.of(0, 2))).thenReturn(pages);
 
-        Page<User> returnUsers = userService.searchWithPagination(q, PageRequest.of(0, 2));
+        Page<UserDto> returnUsers = userService.searchWithPagination(q, PageRequest.of(0, 2));
         Assertions.assertThat(returnUsers.getContent()).hasSize(users.size());
         Assertions.assertThat(returnUsers).containsExactlyElementsOf(users);
 
     }
 
+    @Test
+    public void when_searchSlice_then_NeverCount() {
+        String q = "keyword";
+        List<UserDto> users = List.of(UserDto.builder().id(1L).firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build());
+        when(userRepository.searchProjectedSlice(q, PageRequest.of(0, 1))).thenReturn(new SliceImpl<>(users, PageRequest.of(0, 1), true));
+
+        Slice<UserDto> slice = userService.searchSlice(q, PageRequest.of(0, 1));
+
+        Assertions.assertThat(slice.getContent()).containsExactlyElementsOf(users);
+        Assertions.assertThat(slice.hasNext()).isTrue();
+        verify(userRepository, never()).countSearch(q);
+        verify(userRepository, never()).searchProjected(q, PageRequest.of(0, 1));
+    }
+
+    @Test
+    public void when_searchWithApproximateCount_then_TakeTotalFromEstimator() {
+        String q = "keyword";
+        List<UserDto> users = List.of(
+                UserDto.builder().id(1L).firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build(),
+                UserDto.builder().id(2L).firstName("Tony").lastName("keyword").email("tony@gmail.com").build());
+        when(userRepository.searchProjectedSlice(q, PageRequest.of(0, 2))).thenReturn(new SliceImpl<>(users, PageRequest.of(0, 2), true));
+        when(countEstimator.estimate(q)).thenReturn(40L);
+
+        Page<UserDto> page = userService.searchWithApproximateCount(q, PageRequest.of(0, 2));
+
+        Assertions.assertThat(page.getContent()).containsExactlyElementsOf(users);
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(40L);
+        verify(userRepository, never()).countSearch(q);
+    }
+
+    @Test
+    public void when_searchWithApproximateCountOnLastPage_then_ReturnExactTotal() {
+        String q = "keyword";
+        List<UserDto> users = List.of(UserDto.builder().id(3L).firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build());
+        when(userRepository.searchProjectedSlice(q, PageRequest.of(1, 2))).thenReturn(new SliceImpl<>(users, PageRequest.of(1, 2), false));
+
+        Page<UserDto> page = userService.searchWithApproximateCount(q, PageRequest.of(1, 2));
+
+        Assertions.assertThat(page.getTotalElements()).isEqualTo(3L);
+        verify(countEstimator, never()).estimate(q);
+    }
+
     @Test
     public void whenDeleteUserById_then_verifyRepositoryDeleteMethodCalls() {
         long userId = 1L;
-        User user = User.builder().firstName("keyword").lastName("Silva").email("ramesh@gmail.com").build();
-        when(userRepository.findById(userId)).thenReturn(Optional.of(user));
+        when(userRepository.removeById(userId)).thenReturn(1);
         userService.deleteUserById(userId);
-        verify(userRepository).delete(user);
+        verify(userRepository).removeById(userId);
+        verify(userRepository, never()).findById(userId);
     }
 
     @Test
@@ -221,7 +560,7 @@ class UserServiceImplTest {
     public void whenUpdateUserByInvalidId_then_throwResouceNotFoundException() {
         long userId = 1000L;
 
-        UserDto userDto = UserDto.builder().firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build();
+        UserDto userDto = UserDto.builder().firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").version(0L).build();
         when(userRepository.getById(userId)).thenThrow(new RuntimeException());
 
         Assertions.assertThatExceptionOfType(ResourceNotFoundException.class).
@@ -229,4 +568,40 @@ class UserServiceImplTest {
                 withMessage("user not found for ID: 1000");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void when_autocompleteIndexReady_then_NeverQueryDatabase() {
+        List<UserDto> users = List.of(UserDto.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build());
+        when(autocompleteIndex.getTopK()).thenReturn(10);
+        when(autocompleteIndex.isReady()).thenReturn(true);
+        when(autocompleteIndex.suggest("sil", 5)).thenReturn(users);
+
+        Assertions.assertThat(userService.autocomplete("sil", 5)).containsExactlyElementsOf(users);
+        verify(userRepository, never()).autocompleteProjected(any(), any());
+    }
+
+    @Test
+    public void when_autocompleteIndexNotReady_then_FallBackToPrefixQuery() {
+        List<UserDto> users = List.of(UserDto.builder().id(1L).firstName("Ramesh").lastName("Silva").email("ramesh@gmail.com").build());
+        when(autocompleteIndex.getTopK()).thenReturn(10);
+        when(userRepository.autocompleteProjected("Sil", PageRequest.of(0, 5))).thenReturn(users);
+
+        Assertions.assertThat(userService.autocomplete(" Sil ", 5)).containsExactlyElementsOf(users);
+        Assertions.assertThat(userService.autocomplete(" ", 5)).isEmpty();
+        verify(userRepository, times(1)).autocompleteProjected(any(), any());
+
+        userService.autocomplete("50%_off!", 5);
+        verify(userRepository).autocompleteProjected("50!%!_off!!", PageRequest.of(0, 5));
+    }
+
+    @Test
+    public void when_autocompleteLimitOutOfRange_then_ThrowBadRequest() {
+        when(autocompleteIndex.getTopK()).thenReturn(10);
+
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> userService.autocomplete("sil", 11))
+                .withMessage("Autocomplete limit must be between 1 and 10");
+        Assertions.assertThatExceptionOfType(BadRequestException.class)
+                .isThrownBy(() -> userService.autocomplete("sil", 0));
+    }
+
+}
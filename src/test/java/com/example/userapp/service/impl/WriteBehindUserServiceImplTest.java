@@ -0,0 +1,231 @@
+package com.example.userapp.service.impl;
+
+import com.example.userapp.cache.UserWriteGeneration;
+import com.example.userapp.entity.User;
+import com.example.userapp.event.UserChangedEvent;
+import com.example.userapp.exception.DuplicateEmailException;
+import com.example.userapp.exception.ResourceNotFoundException;
+import com.example.userapp.exception.ServiceBusyException;
+import com.example.userapp.mapper.UserMapperImpl;
+import com.example.userapp.payload.UserDto;
+import com.example.userapp.payload.WriteBehindStatus;
+import com.example.userapp.repository.UserRepository;
+import com.example.userapp.search.EmailBloomFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteBehindUserServiceImplTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private UserIdAllocator idAllocator;
+    private UserRepository repository;
+    private PlatformTransactionManager transactionManager;
+    private UserWriteGeneration writeGeneration;
+    private final List<List<Long>> insertedBatches = Collections.synchronizedList(new ArrayList<>());
+    private final List<UserChangedEvent> events = Collections.synchronizedList(new ArrayList<>());
+    private WriteBehindUserServiceImpl writeBehindService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    Collection<User> users = invocation.getArgument(1);
+                    insertedBatches.add(users.stream().map(User::getId).toList());
+                    return new int[0][];
+                });
+        repository = mock(UserRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        idAllocator = mock(UserIdAllocator.class);
+        AtomicLong ids = new AtomicLong();
+        when(idAllocator.next()).thenAnswer(invocation -> ids.incrementAndGet());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (writeBehindService != null) {
+            writeBehindService.stop();
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenEnqueued_then_returnIdAndStoreOnTimeTrigger() {
+        start(10, 100, Duration.ofMillis(20));
+
+        UserDto accepted = writeBehindService.enqueueUser(user("Ramesh@Gmail.com"));
+
+        Assertions.assertThat(accepted.getId()).isEqualTo(1L);
+        Assertions.assertThat(accepted.getEmail()).isEqualTo("ramesh@gmail.com");
+        verify(jdbcTemplate, timeout(2000)).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        Assertions.assertThat(insertedBatches).containsExactly(List.of(1L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenBatchIsFull_then_flushWithoutWaitingForInterval() {
+        start(10, 3, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 3; i++) {
+            writeBehindService.enqueueUser(user("user" + i + "@gmail.com"));
+        }
+
+        verify(jdbcTemplate, timeout(2000)).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        Assertions.assertThat(insertedBatches).containsExactly(List.of(1L, 2L, 3L));
+    }
+
+    @Test
+    public void whenStopped_then_drainQueueAndAnnounceEveryUser() {
+        start(100, 4, Duration.ofMinutes(1));
+        for (int i = 0; i < 10; i++) {
+            writeBehindService.enqueueUser(user("user" + i + "@gmail.com"));
+        }
+
+        writeBehindService.stop();
+
+        Assertions.assertThat(insertedBatches.stream().flatMap(List::stream)).hasSize(10).doesNotHaveDuplicates();
+        Assertions.assertThat(events).extracting(UserChangedEvent::getId).containsExactlyInAnyOrder(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+        Assertions.assertThatExceptionOfType(ServiceBusyException.class)
+                .isThrownBy(() -> writeBehindService.enqueueUser(user("late@gmail.com")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenQueueIsFull_then_rejectWithServiceBusy() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    release.await(5, TimeUnit.SECONDS);
+                    return new int[0][];
+                });
+        start(1, 1, Duration.ofMillis(10));
+
+        writeBehindService.enqueueUser(user("first@gmail.com"));
+        // the flusher takes the first user and blocks in the insert
+        verify(jdbcTemplate, timeout(2000)).batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class));
+        writeBehindService.enqueueUser(user("second@gmail.com"));
+
+        Assertions.assertThatExceptionOfType(ServiceBusyException.class)
+                .isThrownBy(() -> writeBehindService.enqueueUser(user("third@gmail.com")))
+                .withMessage("User write queue is full, retry later");
+        release.countDown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void whenOneRowViolatesConstraint_then_storeTheRestRowByRow() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenAnswer(invocation -> {
+                    Collection<User> users = invocation.getArgument(1);
+                    if (users.stream().anyMatch(user -> user.getEmail().startsWith("dup"))) {
+                        throw new DataIntegrityViolationException("Unique index or primary key violation");
+                    }
+                    insertedBatches.add(users.stream().map(User::getId).toList());
+                    return new int[0][];
+                });
+        start(10, 3, Duration.ofMinutes(1));
+
+        writeBehindService.enqueueUser(user("a@gmail.com"));
+        writeBehindService.enqueueUser(user("dup@gmail.com"));
+        writeBehindService.enqueueUser(user("b@gmail.com"));
+        writeBehindService.stop();
+
+        Assertions.assertThat(insertedBatches).containsExactly(List.of(1L), List.of(3L));
+        Assertions.assertThat(events).extracting(UserChangedEvent::getId).containsExactly(1L, 3L);
+        WriteBehindStatus status = writeBehindService.getStatus(2L);
+        Assertions.assertThat(status.getState()).isEqualTo(WriteBehindStatus.State.FAILED);
+        Assertions.assertThat(status.getReason()).contains("Unique index");
+    }
+
+    @Test
+    public void whenBatchIsStored_then_bumpWriteGenerationOnce() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenAnswer(invocation -> mock(Connection.class));
+        transactionManager = new DataSourceTransactionManager(dataSource);
+        JdbcTemplate generationJdbc = mock(JdbcTemplate.class);
+        when(generationJdbc.update(startsWith("UPDATE write_generations"), (Object) any())).thenReturn(1);
+        writeGeneration = new UserWriteGeneration(generationJdbc, transactionManager, Duration.ZERO);
+        start(10, 5, Duration.ofMinutes(1));
+
+        for (int i = 0; i < 5; i++) {
+            writeBehindService.enqueueUser(user("generation" + i + "@gmail.com"));
+        }
+        writeBehindService.stop();
+
+        Assertions.assertThat(insertedBatches).containsExactly(List.of(1L, 2L, 3L, 4L, 5L));
+        Assertions.assertThat(events).hasSize(5);
+        verify(generationJdbc, times(1)).update(startsWith("UPDATE write_generations"), (Object) any());
+    }
+
+    @Test
+    public void whenEmailAlreadyQueued_then_rejectDuplicateUntilFlushed() {
+        start(10, 3, Duration.ofMinutes(1));
+
+        writeBehindService.enqueueUser(user("queued@gmail.com"));
+
+        Assertions.assertThatExceptionOfType(DuplicateEmailException.class)
+                .isThrownBy(() -> writeBehindService.enqueueUser(user(" Queued@Gmail.com")));
+        Assertions.assertThat(writeBehindService.getStatus(1L).getState()).isEqualTo(WriteBehindStatus.State.PENDING);
+
+        writeBehindService.stop();
+        when(repository.existsById(1L)).thenReturn(true);
+
+        Assertions.assertThat(insertedBatches).containsExactly(List.of(1L));
+        Assertions.assertThat(writeBehindService.getStatus(1L).getState()).isEqualTo(WriteBehindStatus.State.STORED);
+        Assertions.assertThatExceptionOfType(ResourceNotFoundException.class)
+                .isThrownBy(() -> writeBehindService.getStatus(2L));
+    }
+
+    private void start(int queueCapacity, int batchSize, Duration flushInterval) {
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+        doAnswer(invocation -> {
+            UserChangedEvent event = invocation.getArgument(0);
+            events.add(event);
+            if (writeGeneration != null) {
+                writeGeneration.onUserChanged(event);
+            }
+            return null;
+        }).when(eventPublisher).publishEvent(any(Object.class));
+        writeBehindService = new WriteBehindUserServiceImpl(new UserMapperImpl(), repository, idAllocator,
+                mock(EmailBloomFilter.class), jdbcTemplate, transactionManager, eventPublisher,
+                new SimpleMeterRegistry(), queueCapacity, batchSize, flushInterval, Duration.ofSeconds(5), Duration.ofHours(1), 100);
+        writeBehindService.start();
+    }
+
+    private static UserDto user(String email) {
+        return UserDto.builder().firstName("First").lastName("Last").email(email).build();
+    }
+}
@@ -0,0 +1,10 @@
+-- users table of shards 1..n in ShardRoutingDataSourceTest; shard 0 gets Hibernate's schema
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL PRIMARY KEY,
+    email VARCHAR(255),
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    version BIGINT
+);
+CREATE UNIQUE INDEX IF NOT EXISTS idx_users_email ON users (email);
+CREATE INDEX IF NOT EXISTS idx_users_last_first ON users (last_name, first_name);